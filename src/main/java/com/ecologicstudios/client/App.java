@@ -60,13 +60,15 @@ public class App extends Application {
      * Closes Music player and ensures graceful app-termination.
      * <p>
      * This method is called by the JavaFx runtime when the application is closed.
-     * It stops the music player if it is running and disposes of it. I also calls
+     * It writes any pending game history to disk, stops the music player if it
+     * is running and disposes of it. I also calls
      * the methods {@code Platform.exit()} and {@code System.exit()} making sure
      * that the application is actually terminated when the window is closed.
      */
     @Override
     public void stop() {
         try {
+            GameModel.getInstance().close();
             Music.stop();
             Music.dispose();
             Platform.exit();
@@ -15,12 +15,12 @@ import javafx.scene.Node;
 import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.List;
+import java.util.OptionalDouble;
 
 import com.ecologicstudios.client.models.GameModel;
 import com.ecologicstudios.utils.ChartBuilder;
-import com.ecologicstudios.utils.GameHistory;
 import com.ecologicstudios.utils.GameSession;
-import com.ecologicstudios.utils.PerformanceEvaluator;
+import com.ecologicstudios.utils.SketchPerformanceEvaluator;
 
 /**
  * Controller for the statistics view in the application.
@@ -39,6 +39,11 @@ public final class StatController extends BaseController {
     // ------------------------------------------------------------------------//
     private final String historyItemPath = "/fxml/historyItem.fxml";
 
+    /**
+     * Number of most recent game sessions shown in the history list and chart.
+     */
+    private final int pageSize = 20;
+
     // ------------------------------------------------------------------------//
     // main fields
     // ------------------------------------------------------------------------//
@@ -48,7 +53,7 @@ public final class StatController extends BaseController {
     private GameModel gameModel;
 
     /**
-     * List of all game sessions stored in the history JSON object.
+     * The most recent game sessions, oldest first.
      */
     private List<GameSession> gameSessions;
 
@@ -84,7 +89,7 @@ public final class StatController extends BaseController {
     @Override
     protected final void onReady() {
         this.gameModel = this.getContext().game();
-        this.gameSessions = this.gameModel.getHistory().getAllSessions();
+        this.gameSessions = loadLatestSessions();
 
         if (!this.gameSessions.isEmpty()) {
             List<Point2D> pointList = new ChartBuilder(gameSessions).getChartData();
@@ -115,8 +120,8 @@ public final class StatController extends BaseController {
     /**
      * Handles the reset button event.
      * <p>
-     * Clears the game history and updates the statistics view to reflect the
-     * cleared data.
+     * Clears the game history and its daily summaries and updates the
+     * statistics view to reflect the cleared data.
      * 
      * @param event the ActionEvent from clicking the reset button
      */
@@ -124,11 +129,10 @@ public final class StatController extends BaseController {
     private void handleReset(ActionEvent e) {
 
         // Clear history
-        GameHistory history = gameModel.getHistory();
-        history.clearHistory();
+        gameModel.clearHistory();
 
         // Update gameSession
-        this.gameSessions = gameModel.getHistory().getAllSessions();
+        this.gameSessions = loadLatestSessions();
 
         // Clear all UI components
         historyList.getChildren().clear();
@@ -148,11 +152,22 @@ public final class StatController extends BaseController {
     // update history list
     // ------------------------------------------------------------------------//
     /**
-     * Updates the history list UI component with game session data.
+     * Loads the latest page of game sessions from the history. Only one page
+     * is read, so opening the view costs the same at any history size.
+     *
+     * @return the latest sessions, oldest first
+     */
+    private List<GameSession> loadLatestSessions() {
+        return this.gameModel.getHistory().getPage(0, pageSize, null).sessions().reversed();
+    }
+
+    /**
+     * Updates the history list UI component with game session data, newest
+     * first.
      */
     public void updateHistory() {
         try {
-            for (GameSession session : gameSessions) {
+            for (GameSession session : gameSessions.reversed()) {
                 addHistoryItem(session);
             }
         } catch (IOException e) {
@@ -238,10 +253,16 @@ public final class StatController extends BaseController {
     public void updatePerformanceLabel() {
 
         if (gameSessions.size() > 3) {
-            PerformanceEvaluator performanceEvaluator = new PerformanceEvaluator();
-            performanceEvaluator.insertValues(points.stream().map(elem -> elem.getYValue().intValue()).toList());
-            performanceLabel.setText(
-                    String.format("Your last game was better than %.1f%% of previous games.", performanceEvaluator.evaluate().get()));
+            SketchPerformanceEvaluator performanceEvaluator = new SketchPerformanceEvaluator();
+            performanceEvaluator.insertValues(points.stream().mapToDouble(elem -> elem.getYValue().doubleValue()));
+            String text = String.format("Your last game was better than %.1f%% of your recent games",
+                    performanceEvaluator.evaluateAsDouble().getAsDouble());
+            SketchPerformanceEvaluator ranking = gameModel.getPerformanceRanking();
+            OptionalDouble allGames = ranking == null ? OptionalDouble.empty() : ranking.evaluateAsDouble();
+            if (allGames.isPresent() && ranking.getCount() > gameSessions.size()) {
+                text += String.format(" and %.1f%% of all your games", allGames.getAsDouble());
+            }
+            performanceLabel.setText(text + ".");
         } else {
             performanceLabel.setText(String.format("You have not played enough games yet for this data to be visible"));
         }
@@ -1,14 +1,22 @@
 package com.ecologicstudios.client.models;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import com.ecologicstudios.utils.CardFetcher;
 import com.ecologicstudios.utils.FeedbackGenerator;
 import com.ecologicstudios.utils.GameHistory;
 import com.ecologicstudios.utils.GameSession;
-import com.ecologicstudios.utils.JsonCardFetcher;
+import com.ecologicstudios.utils.HistoryRetention;
+import com.ecologicstudios.utils.ReloadingCardCatalog;
+import com.ecologicstudios.utils.RoundLog;
+import com.ecologicstudios.utils.ScoreRescaler;
+import com.ecologicstudios.utils.SketchPerformanceEvaluator;
 import com.ecologicstudios.utils.Card;
 import com.ecologicstudios.utils.Alternative;
 
@@ -31,7 +39,28 @@ import com.ecologicstudios.utils.Alternative;
  * @version 1.0
  */
 public class GameModel {
-    private final String historyPath = "src/main/resources/json/history.json";
+    /**
+     * Path to the append-only file that stores the game history.
+     */
+    private final String historyPath = "src/main/resources/json/history.jsonl";
+
+    /**
+     * Path of the history file used by earlier versions; migrated once into
+     * {@link #historyPath}.
+     */
+    private final String legacyHistoryPath = "src/main/resources/json/history.json";
+
+    /**
+     * Path to the file with the ranking of all games ever played, next to
+     * {@link #historyPath}.
+     */
+    private final Path performanceSketchPath = Path.of(historyPath + ".sketch");
+
+    /**
+     * Number of days game sessions are kept in full before they are rolled up
+     * into daily summaries.
+     */
+    private final int retentionDays = 365;
 
     /**
      * Path to the JSON file that stores the cards.
@@ -43,11 +72,40 @@ public class GameModel {
      */
     private static GameModel instance;
 
+    /**
+     * Source of the card decks; picks up edits to the card file while running.
+     */
+    private final ReloadingCardCatalog cardCatalog = new ReloadingCardCatalog(path);
+
     /**
      * Reference to the history object in which game data is stored.
      */
     private GameHistory gameHistory;
 
+    /**
+     * Loads, updates and saves the ranking of all games, one task at a time
+     * and off the JavaFX thread, since saving locks, re-reads and syncs the
+     * file at {@link #performanceSketchPath}.
+     */
+    private final ExecutorService rankingWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ranking-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * The ranking of all games as last loaded or saved by
+     * {@link #rankingWriter}, or {@code null} until it is loaded. Each update
+     * publishes a new evaluator, so a published one is never changed.
+     */
+    private volatile SketchPerformanceEvaluator performanceRanking;
+
+    /**
+     * Rolls sessions older than {@link #retentionDays} up into daily summaries
+     * in the background.
+     */
+    private HistoryRetention historyRetention;
+
     /**
      * List of cards for the current game session.
      */
@@ -91,6 +149,16 @@ public class GameModel {
      */
     private FeedbackGenerator feedbackCalculator;
 
+    /**
+     * The answers of the current game session; reused across sessions.
+     */
+    private final RoundLog rounds = new RoundLog(maxNumCards);
+
+    /**
+     * When the current card was presented, from {@link System#nanoTime()}.
+     */
+    private long cardShownNanos;
+
     /**
      * This method replaces the functionality of the constructor effectively
      * disabling creating more than one instance.
@@ -109,15 +177,25 @@ public class GameModel {
      * this class.
      */
     private GameModel() {
-        this.gameHistory = new GameHistory(historyPath);
+        this.gameHistory = new GameHistory(historyPath, legacyHistoryPath);
+        this.historyRetention = new HistoryRetention(gameHistory, Path.of(historyPath + ".rollups"),
+                Duration.ofDays(retentionDays));
+        historyRetention.start(Duration.ofHours(1));
+        rankingWriter.execute(this::loadPerformanceRanking);
+
+        try {
+            cardCatalog.start();
+        } catch (RuntimeException e) {
+            System.err.println("Card file will not be reloaded: " + e.getMessage());
+        }
     }
 
     /**
      * Resets the game fields to their initial values and prepares a new game
      * session.
      * <p>
-     * This method initializes a new card deck based on the specified difficulty
-     * setting,
+     * This method takes a new card deck from the current card catalog based
+     * on the specified difficulty setting,
      * shuffles the cards, resets all counters and results to zero, and creates a
      * new
      * feedback calculator for result evaluation.
@@ -131,12 +209,13 @@ public class GameModel {
         this.totalResult = 0;
         this.maxNumCards = maxNumCards;
         this.difficulty = difficulty;
+        this.rounds.reset(maxNumCards); // sized up front, so recording an answer does not allocate
 
-        CardFetcher fetcher = new JsonCardFetcher(path); // fetch cards from given path (in resources)
-        cards = fetcher.getCardsByDifficulty(difficulty); // fetch out only cards of the given difficulty
+        // the catalog is only re-parsed when the card file changes; every game gets its own copy of the deck
+        cards = cardCatalog.current().newDeck(difficulty);
         Collections.shuffle(cards); // shuffle cards
 
-        feedbackCalculator = new FeedbackGenerator(new LinkedList<>(cards), maxNumCards);
+        feedbackCalculator = new FeedbackGenerator(cards, maxNumCards); // bounds are computed up front
     }
 
     /**
@@ -178,6 +257,7 @@ public class GameModel {
         if (!gameEnded() && !cards.isEmpty() && cardsCount == answersCount) {
             cardsCount++;
             currentCard = cards.remove(0);
+            cardShownNanos = System.nanoTime();
             return currentCard;
         }
         throw new IllegalStateException(cards.isEmpty() ? "no enough cards" : "some unknown error occurred");
@@ -189,7 +269,9 @@ public class GameModel {
      * This method checks if the provided {@code answer} exists among the
      * alternatives of the current card using the equals method. If the answer is
      * valid,
-     * its CO2 value is added to the total result. If the answer is not found, an
+     * its CO2 value is added to the total result, and the card, the index of the
+     * answer and the response time are recorded for the session. If the answer
+     * is not found, an
      * {@link IllegalArgumentException} is thrown.
      *
      * @param answer the selected {@link Alternative} to submit
@@ -199,10 +281,12 @@ public class GameModel {
     public void submitAnswer(Alternative answer) throws IllegalArgumentException {
         if (gameEnded())
             return; // answers cannot be submitted after end of session
-        for (Alternative alt : currentCard.getAlternatives()) {
-            if (alt.equals(answer)) {
+        List<Alternative> alternatives = currentCard.getAlternatives();
+        for (int i = 0; i < alternatives.size(); i++) {
+            if (alternatives.get(i).equals(answer)) {
                 answersCount++;
                 totalResult += answer.getCo2();
+                rounds.record(currentCard.getId(), i, (System.nanoTime() - cardShownNanos) / 1_000_000);
 
                 // update history only if the last answer is submitted
                 if (gameEnded())
@@ -312,14 +396,151 @@ public class GameModel {
             throw new IllegalStateException("cannot access gameession before game ends");
         }
         return new GameSession(difficulty, maxNumCards, totalResult, feedbackCalculator.getMinResult(),
-                feedbackCalculator.getMaxResult());
+                feedbackCalculator.getMaxResult(), rounds);
     }
 
     private void updateHistory() {
-        this.gameHistory.addSession(getSession());
+        GameSession session = getSession();
+        try {
+            this.gameHistory.addSession(session);
+        } catch (IllegalStateException e) {
+            System.err.println("Error saving game session: " + e.getMessage());
+            return;
+        }
+        double performance;
+        try {
+            performance = performanceOf(session);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error updating performance ranking: " + e.getMessage());
+            return;
+        }
+        rankingWriter.execute(() -> recordPerformance(performance));
+    }
+
+    /**
+     * Loads the ranking of all games, building it from the history if it has
+     * not been stored yet, e.g. on the first start after an update. Runs on
+     * {@link #rankingWriter}.
+     */
+    private void loadPerformanceRanking() {
+        SketchPerformanceEvaluator evaluator = SketchPerformanceEvaluator.load(performanceSketchPath);
+        if (evaluator == null) {
+            evaluator = new SketchPerformanceEvaluator();
+            for (GameSession session : gameHistory.getAllSessions()) {
+                try {
+                    evaluator.insertValue(performanceOf(session));
+                } catch (IllegalArgumentException e) {
+                    // a session without a valid score range has no performance score
+                }
+            }
+            try {
+                evaluator.save(performanceSketchPath);
+            } catch (IOException e) {
+                System.err.println("Error saving performance ranking: " + e.getMessage());
+            }
+        }
+        performanceRanking = evaluator;
+    }
+
+    /**
+     * Adds the performance of a game to the stored ranking, merging the games
+     * other processes added meanwhile, and publishes the result. Runs on
+     * {@link #rankingWriter}.
+     */
+    private void recordPerformance(double performance) {
+        try {
+            performanceRanking = SketchPerformanceEvaluator.record(performanceSketchPath, performance);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error updating performance ranking: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Empties the stored ranking and publishes the empty one. Runs on
+     * {@link #rankingWriter}.
+     */
+    private void clearPerformanceRanking() {
+        SketchPerformanceEvaluator evaluator = new SketchPerformanceEvaluator();
+        try {
+            evaluator.save(performanceSketchPath);
+        } catch (IOException e) {
+            System.err.println("Error clearing performance ranking: " + e.getMessage());
+        }
+        performanceRanking = evaluator;
+    }
+
+    /**
+     * Returns the performance score of a session, as shown in the statistics
+     * chart.
+     *
+     * @throws IllegalArgumentException if the session's scores are not valid
+     */
+    private static double performanceOf(GameSession session) {
+        return ScoreRescaler.evaluate(session.getTotalScore(), session.getBestScore(), session.getWorstScore());
     }
 
     public GameHistory getHistory() {
         return this.gameHistory;
     }
+
+    /**
+     * Gets the ranking of all games ever played, including those no longer in
+     * the history. The ranking is kept in memory and saved in the background,
+     * so this does not read the disk; it may lag behind the last game by the
+     * time it takes to save it. The result must not be modified.
+     *
+     * @return the evaluator whose latest value is the last game played, or
+     *         {@code null} if it has not been loaded yet
+     */
+    public SketchPerformanceEvaluator getPerformanceRanking() {
+        return performanceRanking;
+    }
+
+    /**
+     * Clears the game history, its daily summaries and the ranking of all
+     * games. This operation cannot be undone.
+     */
+    public void clearHistory() {
+        gameHistory.clearHistory();
+        historyRetention.clearRollups();
+        rankingWriter.execute(this::clearPerformanceRanking);
+    }
+
+    /**
+     * Gets the retention policy of the history, e.g. to read the daily
+     * summaries of sessions older than the retention period.
+     *
+     * @return the history retention
+     */
+    public HistoryRetention getHistoryRetention() {
+        return this.historyRetention;
+    }
+
+    /**
+     * Gets the card source used for new games, e.g. to read its reload metrics.
+     *
+     * @return the reloading card catalog
+     */
+    public ReloadingCardCatalog getCardCatalog() {
+        return this.cardCatalog;
+    }
+
+    /**
+     * Releases background resources before the application exits: waits for
+     * the ranking of all games and the game history to be written to disk and
+     * stops compacting it and watching the card file.
+     */
+    public void close() {
+        rankingWriter.shutdown();
+        try {
+            if (!rankingWriter.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.err.println("Performance ranking was not saved in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        historyRetention.close();
+        gameHistory.close();
+        cardCatalog.close();
+    }
 }
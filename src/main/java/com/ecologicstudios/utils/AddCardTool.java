@@ -14,7 +14,13 @@ import java.util.List;
  * Usage example:
  * <pre>
  * java AddCardTool data/cards.json 5 "Campus policy" Easy "Plant meals:-6" "Beef day:18"
+ * java AddCardTool --compact data/cards.json
+ * java AddCardTool --import data/cards.json new_cards.csv
  * </pre>
+ * Added cards go to the file's update journal (see {@link CardJsonIO}); the
+ * {@code --compact} form folds the journal back into the card file. The
+ * {@code --import} form streams many cards from a CSV or JSON Lines file in one
+ * run (see {@link BulkCardImport}).
  * 
  * @author Ecologic Studios
  * @version 1.0
@@ -39,9 +45,26 @@ public class AddCardTool {
      * @throws Exception if file I/O operations fail or argument parsing encounters errors
      */
     public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("--compact")) {
+            int count = CardJsonIO.compact(Path.of(args[1]));
+            System.out.println("Compacted " + count + " cards into " + Path.of(args[1]).toAbsolutePath());
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--import")) {
+            BulkCardImport.Report report = new BulkCardImport().run(Path.of(args[1]), Path.of(args[2]));
+            report.rejects().forEach(System.out::println);
+            if (report.rejected() > report.rejects().size()) {
+                System.out.println("... " + (report.rejected() - report.rejects().size()) + " more rejected rows");
+            }
+            System.out.printf("Imported %d cards (%d rejected) in %.1f s, %.0f cards/s%n", report.accepted(),
+                    report.rejected(), report.nanos() / 1e9, report.cardsPerSecond());
+            return;
+        }
         if (args.length < 5) {
             System.out.println("Usage:");
             System.out.println("  AddCardTool <file> <id> <scenario> <difficulty> <choice1>:<co2_1> [<choice2>:<co2_2> ...]");
+            System.out.println("  AddCardTool --compact <file>");
+            System.out.println("  AddCardTool --import <file> <cards.csv|cards.jsonl>");
             System.out.println("Example:");
             System.out.println("  AddCardTool data/cards.json 5 \"Campus policy\" Easy \"Plant meals:-6\" \"Beef day:18\"");
             return;
@@ -54,15 +77,12 @@ public class AddCardTool {
 
         List<Alternative> choices = new ArrayList<>();
         for (int i = 4; i < args.length; i++) {
-            String token = args[i].trim();
-            int sep = token.lastIndexOf(':');            // safer if text contains ':'
-            if (sep <= 0 || sep == token.length() - 1) {
-                System.out.println("Invalid choice format (use \"Text:NUMBER\"): " + token);
+            try {
+                choices.add(BulkCardImport.parseChoice(args[i]));
+            } catch (IllegalArgumentException e) {
+                System.out.println(e.getMessage());
                 return;
             }
-            String text = token.substring(0, sep).trim();
-            int co2 = Integer.parseInt(token.substring(sep + 1).trim());
-            choices.add(new Alternative(text, co2));
         }
 
         Card card = new Card(id, scenario, difficulty, choices);
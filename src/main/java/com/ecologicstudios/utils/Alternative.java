@@ -1,5 +1,7 @@
 package com.ecologicstudios.utils;
 
+import java.util.Objects;
+
 /**
  * Represents an alternative choice in an environmental scenario with its
  * associated CO2 emission value.
@@ -35,6 +37,18 @@ public class Alternative {
         this.co2 = co2;
     }
 
+    /**
+     * Constructs a new Alternative with a fractional CO2 value, as found in the
+     * card JSON files.
+     *
+     * @param text the descriptive text for this alternative choice
+     * @param co2  the CO2 emission value associated with selecting this alternative
+     */
+    public Alternative(String text, double co2) {
+        this.choice = text;
+        this.co2 = co2;
+    }
+
     /**
      * Returns the description of this choice.
      *
@@ -52,4 +66,30 @@ public class Alternative {
     public double getCo2() {
         return co2;
     }
-}
\ No newline at end of file
+
+    /**
+     * Two alternatives are equal if they have the same choice text and the same
+     * CO2 value. This lets alternatives that are created on demand, such as those
+     * of {@link CompactCardStore} cards, be matched against each other.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if {@code o} is an equal alternative
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Alternative)) return false;
+        Alternative other = (Alternative) o;
+        return Double.compare(co2, other.co2) == 0 && Objects.equals(choice, other.choice);
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}.
+     *
+     * @return the hash code of this alternative
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(choice, co2);
+    }
+}
@@ -0,0 +1,130 @@
+package com.ecologicstudios.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Durable file writes for the game history and the card file.
+ * <p>
+ * {@link #replace(Path, Content)} writes a complete new version of a file: the
+ * content goes to a temporary file in the same directory, which is forced to
+ * disk and then renamed over the target in one atomic step. A crash or power
+ * cut at any point leaves either the old or the new file, never a mix.
+ * {@link #append(Path, byte[])} appends to a log and forces it to disk once,
+ * so a whole batch of records costs a single sync.
+ * <p>
+ * After a file is created or renamed its directory is synced as well, where
+ * the platform supports it, so the new directory entry survives a power cut.
+ * <p>
+ * All methods are static and the class cannot be instantiated.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+final class AtomicFiles {
+    /**
+     * Writes the content of a file.
+     */
+    @FunctionalInterface
+    interface Content {
+        /**
+         * Writes the content to {@code out}. Closing {@code out} is allowed but
+         * not required.
+         *
+         * @param out the stream to write to
+         * @throws IOException if the content cannot be written
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private AtomicFiles() {}
+
+    /**
+     * Atomically replaces {@code target} with the given content.
+     *
+     * @param target  the file to write; its parent directory is created if needed
+     * @param content writes the new content
+     * @throws IOException if the content cannot be written; {@code target} is
+     *                     then unchanged
+     */
+    static void replace(Path target, Content content) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                OutputStream buffered = new BufferedOutputStream(Channels.newOutputStream(channel));
+                content.writeTo(new FilterOutputStream(buffered) {
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush(); // the channel is forced and closed below
+                    }
+                });
+                buffered.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        syncDirectory(dir);
+    }
+
+    /**
+     * Appends bytes to {@code file} and forces them to disk with one sync.
+     *
+     * @param file  the file to append to; created if needed
+     * @param bytes the bytes to append
+     * @throws IOException if the bytes cannot be written or synced
+     */
+    static void append(Path file, byte[] bytes) throws IOException {
+        boolean created = !Files.exists(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        if (created) {
+            syncDirectory(file.toAbsolutePath().getParent());
+        }
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Forces a directory's entries to disk. Not every platform allows opening a
+     * directory (e.g. Windows), so failures are ignored.
+     */
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+}
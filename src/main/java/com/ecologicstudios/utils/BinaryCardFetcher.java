@@ -0,0 +1,224 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A {@link CardFetcher} that reads a binary card pack (see {@link CardPack})
+ * through a memory-mapped file.
+ * <p>
+ * Loading only maps the file and groups card positions by difficulty; no card
+ * is decoded up front. The lists returned by this fetcher are read-only views
+ * that decode a {@link Card} each time an element is accessed, so a game only
+ * pays for the cards it actually deals. Callers that access the same card many
+ * times, or want to shuffle a deck, should copy the list first.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class BinaryCardFetcher implements CardFetcher {
+    /**
+     * The mapped pack file; {@code null} when nothing is loaded.
+     */
+    private ByteBuffer pack;
+
+    /**
+     * Number of cards in the pack.
+     */
+    private int cardCount;
+
+    /**
+     * Card positions per difficulty, in deal order.
+     */
+    private Map<Difficulty, int[]> byDifficulty = new EnumMap<>(Difficulty.class);
+
+    /**
+     * Constructs a new BinaryCardFetcher and maps the specified card pack.
+     *
+     * @param path the file path to the card pack
+     */
+    public BinaryCardFetcher(String path) {
+        map(path);
+    }
+
+    /**
+     * Maps the specified card pack and indexes its cards by difficulty.
+     * <p>
+     * If the file cannot be read or is not a valid card pack an error is logged
+     * to stderr and the fetcher is left empty.
+     *
+     * @param path the file path to the card pack
+     */
+    @Override
+    public void loadCards(String path) {
+        map(path);
+    }
+
+    /**
+     * Returns the cards of the given difficulty as a lazily decoded view.
+     *
+     * @param difficulty the difficulty label (case-insensitive)
+     * @return a read-only list of matching cards in deal order; empty if the
+     *         label is unknown
+     */
+    @Override
+    public List<Card> getCardsByDifficulty(String difficulty) {
+        Difficulty key = Difficulty.fromLabel(difficulty);
+        int[] positions = key == null ? null : byDifficulty.get(key);
+        return positions == null ? List.of() : new CardView(positions);
+    }
+
+    /**
+     * Returns the card with the given id, decoded on demand. The id index is
+     * searched with a binary search.
+     *
+     * @param id the card id
+     * @return the first card with the given id, or {@code null} if there is none
+     */
+    @Override
+    public Card getCardById(int id) {
+        if (pack == null) return null;
+        int base = pack.getInt(CardPack.H_ID_INDEX);
+        int lo = 0;
+        int hi = cardCount - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = pack.getInt(base + 8 * mid);
+            if (midId < id) {
+                lo = mid + 1;
+            } else {
+                if (midId == id) found = mid; // keep searching left for the first match
+                hi = mid - 1;
+            }
+        }
+        return found < 0 ? null : decode(pack.getInt(base + 8 * found + 4));
+    }
+
+    /**
+     * Returns all cards in the pack as a lazily decoded view.
+     *
+     * @return a read-only list of all cards in deal order
+     */
+    @Override
+    public List<Card> getAllCards() {
+        return new CardView(null);
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Maps and indexes a card pack; also used by the constructor, which must
+     * not call the overridable {@link #loadCards(String)}.
+     */
+    private void map(String path) {
+        try (FileChannel ch = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("card pack larger than 2 GB");
+            }
+            MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (mapped.capacity() < CardPack.HEADER_BYTES || mapped.getInt(0) != CardPack.MAGIC) {
+                throw new IOException("not a card pack: " + path);
+            }
+            if (mapped.getInt(4) != CardPack.VERSION) {
+                throw new IOException("unsupported card pack version " + mapped.getInt(4));
+            }
+            this.pack = mapped;
+            this.cardCount = mapped.getInt(CardPack.H_CARD_COUNT);
+            this.byDifficulty = indexDifficulties();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading card pack: " + e.getMessage());
+            this.pack = null;
+            this.cardCount = 0;
+            this.byDifficulty = new EnumMap<>(Difficulty.class);
+        }
+    }
+
+    /**
+     * Groups card positions by difficulty. Only the difficulty column of the
+     * card table and the distinct difficulty strings are read.
+     */
+    private Map<Difficulty, int[]> indexDifficulties() {
+        Map<Integer, Difficulty> labels = new HashMap<>();
+        Map<Difficulty, List<Integer>> buckets = new EnumMap<>(Difficulty.class);
+        int table = pack.getInt(CardPack.H_CARD_TABLE);
+        for (int i = 0; i < cardCount; i++) {
+            int ref = pack.getInt(table + CardPack.CARD_BYTES * i + 4);
+            Difficulty d = labels.computeIfAbsent(ref, r -> Difficulty.fromLabel(string(r)));
+            if (d != null) {
+                buckets.computeIfAbsent(d, k -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<Difficulty, int[]> index = new EnumMap<>(Difficulty.class);
+        buckets.forEach((d, list) -> index.put(d, list.stream().mapToInt(Integer::intValue).toArray()));
+        return index;
+    }
+
+    /**
+     * Decodes the card at the given position in the card table.
+     */
+    private Card decode(int position) {
+        int entry = pack.getInt(CardPack.H_CARD_TABLE) + CardPack.CARD_BYTES * position;
+        int first = pack.getInt(entry + 12);
+        int count = pack.getInt(entry + 16);
+
+        int choices = pack.getInt(CardPack.H_CHOICE_TABLE);
+        int co2 = pack.getInt(CardPack.H_CO2_TABLE);
+        List<Alternative> alternatives = new ArrayList<>(count);
+        for (int a = first; a < first + count; a++) {
+            alternatives.add(new Alternative(string(pack.getInt(choices + 4 * a)), pack.getDouble(co2 + 8 * a)));
+        }
+        return new Card(pack.getInt(entry), string(pack.getInt(entry + 8)), string(pack.getInt(entry + 4)),
+                alternatives);
+    }
+
+    /**
+     * Decodes a string from the pool, or returns {@code null} for index -1.
+     */
+    private String string(int index) {
+        if (index < 0) return null;
+        int offsets = pack.getInt(CardPack.H_STRING_OFFSETS);
+        int start = pack.getInt(offsets + 4 * index);
+        int end = pack.getInt(offsets + 4 * (index + 1));
+        byte[] bytes = new byte[end - start];
+        pack.get(pack.getInt(CardPack.H_STRING_DATA) + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read-only list that decodes cards on access.
+     */
+    private final class CardView extends AbstractList<Card> implements RandomAccess {
+        /** Card positions of this view, or {@code null} for all cards. */
+        private final int[] positions;
+
+        CardView(int[] positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public Card get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return decode(positions == null ? index : positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions == null ? cardCount : positions.length;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.ecologicstudios.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Streams a large batch of cards into a card file in one pass.
+ * <p>
+ * The input is either CSV ({@code .csv}) or JSON Lines (any other extension).
+ * It is read in fixed-size batches of lines; each batch is parsed and validated
+ * in parallel, and the accepted cards are appended to the card file's journal
+ * through a single writer (see {@link CardJsonIO#appendJournal(Path, List)}).
+ * When the input is exhausted the journal is compacted once into the card file.
+ * Only one batch of input is held in memory at a time, so the input may be larger
+ * than the heap; the final deck must still fit, as it does for the game.
+ * <p>
+ * CSV rows have the form
+ * <pre>
+ * id,scenario,difficulty,choice text:co2[,choice text:co2 ...]
+ * </pre>
+ * Fields may be quoted with {@code "} (doubling {@code ""} inside quotes); a
+ * quoted field cannot span lines. A first row starting with {@code id} is
+ * treated as a header. JSON Lines rows hold one card object each, in the same
+ * format as the card files.
+ * <p>
+ * Rows that cannot be parsed or fail validation are rejected and reported with
+ * their line number; the rest of the import continues.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class BulkCardImport {
+    /**
+     * Number of input lines parsed together.
+     */
+    private static final int BATCH_LINES = 8192;
+
+    /**
+     * How many rejected rows are described individually in the report.
+     */
+    private static final int MAX_REPORTED_REJECTS = 100;
+
+    /**
+     * Outcome of an import.
+     *
+     * @param accepted  number of cards written
+     * @param rejected  number of rows rejected
+     * @param rejects   descriptions of the first rejected rows
+     * @param nanos     wall-clock duration of the import, in nanoseconds
+     */
+    public record Report(long accepted, long rejected, List<String> rejects, long nanos) {
+        /**
+         * Returns the import throughput.
+         *
+         * @return accepted cards per second
+         */
+        public double cardsPerSecond() {
+            return nanos == 0 ? 0 : accepted * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Parsed form of a single input row: a card or the reason it was rejected.
+     */
+    private record Row(Card card, String error) {}
+
+    /**
+     * Constructs a new BulkCardImport.
+     */
+    public BulkCardImport() {
+    }
+
+    /**
+     * Imports all rows of {@code input} into {@code target}.
+     *
+     * @param target the card file to update
+     * @param input  the CSV or JSON Lines file to read
+     * @return a report of the import
+     * @throws IOException if an input or output file cannot be read or written
+     */
+    public Report run(Path target, Path input) throws IOException {
+        boolean csv = input.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        long start = System.nanoTime();
+        long accepted = 0;
+        long rejected = 0;
+        List<String> rejects = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            long lineNo = 0;
+            List<String> lines = new ArrayList<>(BATCH_LINES);
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line != null) {
+                    lines.add(line);
+                    if (lines.size() < BATCH_LINES) continue;
+                }
+                if (lines.isEmpty()) break;
+
+                long firstLine = lineNo + 1;
+                List<Row> rows = lines.parallelStream().map(l -> csv ? parseCsv(l) : parseJson(l)).toList();
+                List<Card> cards = new ArrayList<>(rows.size());
+                for (int i = 0; i < rows.size(); i++) {
+                    Row row = rows.get(i);
+                    if (row == null) continue; // blank line or header
+                    if (row.card() != null) {
+                        cards.add(row.card());
+                    } else {
+                        rejected++;
+                        if (rejects.size() < MAX_REPORTED_REJECTS) {
+                            rejects.add("line " + (firstLine + i) + ": " + row.error());
+                        }
+                    }
+                }
+                CardJsonIO.appendJournal(target, cards);
+                accepted += cards.size();
+                lineNo += lines.size();
+                lines.clear();
+                if (line == null) break;
+            }
+        }
+
+        CardJsonIO.compact(target);
+        return new Report(accepted, rejected, rejects, System.nanoTime() - start);
+    }
+
+    /**
+     * Parses one alternative written as {@code "choice text:co2"}. The last
+     * colon separates text and value, so the text itself may contain colons.
+     *
+     * @param token the alternative to parse
+     * @return the parsed alternative
+     * @throws IllegalArgumentException if the token is malformed or the CO2 value
+     *                                  is not a finite number
+     */
+    public static Alternative parseChoice(String token) {
+        String t = token.trim();
+        int sep = t.lastIndexOf(':');
+        if (sep <= 0 || sep == t.length() - 1) {
+            throw new IllegalArgumentException("Invalid choice format (use \"Text:NUMBER\"): " + t);
+        }
+        double co2;
+        try {
+            co2 = Double.parseDouble(t.substring(sep + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid CO2 value in choice: " + t);
+        }
+        if (!Double.isFinite(co2)) {
+            throw new IllegalArgumentException("CO2 value must be finite: " + t);
+        }
+        return new Alternative(t.substring(0, sep).trim(), co2);
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Parses a CSV row; returns {@code null} for blank lines and the header.
+     */
+    private static Row parseCsv(String line) {
+        if (line.isBlank()) return null;
+        try {
+            List<String> fields = splitCsv(line);
+            if (fields.get(0).trim().equalsIgnoreCase("id")) return null;
+            if (fields.size() < 4) {
+                return new Row(null, "expected id, scenario, difficulty and at least one choice");
+            }
+            List<Alternative> choices = new ArrayList<>(fields.size() - 3);
+            for (String field : fields.subList(3, fields.size())) {
+                choices.add(parseChoice(field));
+            }
+            return validate(new Card(Integer.parseInt(fields.get(0).trim()), fields.get(1).trim(),
+                    fields.get(2).trim(), choices));
+        } catch (RuntimeException e) {
+            return new Row(null, e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a JSON Lines row; returns {@code null} for blank lines.
+     */
+    private static Row parseJson(String line) {
+        if (line.isBlank()) return null;
+        try {
+            return validate(CardJsonStream.readCard(new JsonReader(new StringReader(line))));
+        } catch (IOException | RuntimeException e) {
+            return new Row(null, "malformed JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that a parsed card can be played.
+     */
+    private static Row validate(Card card) {
+        if (card.getScenario() == null || card.getScenario().isBlank()) {
+            return new Row(null, "missing scenario");
+        }
+        Difficulty difficulty = Difficulty.fromLabel(card.getDifficulty());
+        if (difficulty == null) {
+            return new Row(null, "unknown difficulty: " + card.getDifficulty());
+        }
+        if (card.getAlternatives() == null || card.getAlternatives().isEmpty()) {
+            return new Row(null, "no alternatives");
+        }
+        for (Alternative a : card.getAlternatives()) {
+            if (a.getChoice() == null || a.getChoice().isBlank() || !Double.isFinite(a.getCo2())) {
+                return new Row(null, "invalid alternative");
+            }
+        }
+        card.difficulty = difficulty.getLabel();
+        return new Row(card, null);
+    }
+
+    /**
+     * Splits a CSV line into fields, honouring double quotes.
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -15,6 +15,11 @@ import java.util.List;
  * <p>
  * This class is designed for JSON serialization/deserialization using Gson,
  * which requires public fields and a no-argument constructor.
+ * <p>
+ * The lowest, highest and mean CO2 value of a card's alternatives are computed
+ * once when the card is loaded and kept in transient fields, so scoring code can
+ * read them without scanning the alternatives again. Code that replaces
+ * {@link #alternatives} afterwards must call {@link #computeBounds()}.
  *
  * @author Ecologic Studios
  * @version 1.0
@@ -40,6 +45,27 @@ public class Card {
      */
     public List<Alternative> alternatives;
 
+    /**
+     * Lowest CO2 value among the alternatives (not serialized).
+     */
+    private transient double minCo2;
+
+    /**
+     * Highest CO2 value among the alternatives (not serialized).
+     */
+    private transient double maxCo2;
+
+    /**
+     * Mean CO2 value of the alternatives (not serialized).
+     */
+    private transient double meanCo2;
+
+    /**
+     * Whether the CO2 bounds have been computed. Volatile so that bounds
+     * computed lazily on one thread are fully visible to others.
+     */
+    private transient volatile boolean boundsComputed;
+
     /**
      * Default no-argument constructor required for Gson deserialization.
      */
@@ -61,6 +87,31 @@ public class Card {
         this.scenario = scenario;
         this.difficulty = difficulty;
         this.alternatives = alternatives;
+        computeBounds();
+    }
+
+    /**
+     * Constructs a new Card whose CO2 bounds are already known, e.g. because
+     * they are stored alongside the card data.
+     *
+     * @param id           the unique identifier for this card
+     * @param scenario     the environmental scenario description
+     * @param difficulty   the difficulty level
+     * @param alternatives the list of alternative choices
+     * @param minCo2       the lowest CO2 value among the alternatives
+     * @param maxCo2       the highest CO2 value among the alternatives
+     * @param meanCo2      the mean CO2 value of the alternatives
+     */
+    Card(int id, String scenario, String difficulty, List<Alternative> alternatives,
+            double minCo2, double maxCo2, double meanCo2) {
+        this.id = id;
+        this.scenario = scenario;
+        this.difficulty = difficulty;
+        this.alternatives = alternatives;
+        this.minCo2 = minCo2;
+        this.maxCo2 = maxCo2;
+        this.meanCo2 = meanCo2;
+        this.boundsComputed = true;
     }
 
     /**
@@ -101,4 +152,62 @@ public class Card {
     public List<Alternative> getAlternatives() {
         return this.alternatives;
     }
-}
\ No newline at end of file
+
+    /**
+     * Computes and stores the lowest, highest and mean CO2 value of this card's
+     * alternatives. Card loaders call this once; it only needs to be called again
+     * if {@link #alternatives} is replaced. A card without alternatives has all
+     * bounds equal to 0. The method is final because the constructor calls it.
+     */
+    public final void computeBounds() {
+        double min = 0;
+        double max = 0;
+        double sum = 0;
+        int n = 0;
+        if (alternatives != null) {
+            for (Alternative a : alternatives) {
+                double co2 = a.getCo2();
+                if (n == 0 || co2 < min) min = co2;
+                if (n == 0 || co2 > max) max = co2;
+                sum += co2;
+                n++;
+            }
+        }
+        this.minCo2 = min;
+        this.maxCo2 = max;
+        this.meanCo2 = n == 0 ? 0 : sum / n;
+        this.boundsComputed = true;
+    }
+
+    /**
+     * Returns the lowest CO2 value among this card's alternatives, i.e. the best
+     * possible choice.
+     *
+     * @return the minimum CO2 value (0 if there are no alternatives)
+     */
+    public double getMinCo2() {
+        if (!boundsComputed) computeBounds();
+        return minCo2;
+    }
+
+    /**
+     * Returns the highest CO2 value among this card's alternatives, i.e. the
+     * worst possible choice.
+     *
+     * @return the maximum CO2 value (0 if there are no alternatives)
+     */
+    public double getMaxCo2() {
+        if (!boundsComputed) computeBounds();
+        return maxCo2;
+    }
+
+    /**
+     * Returns the mean CO2 value of this card's alternatives.
+     *
+     * @return the mean CO2 value (0 if there are no alternatives)
+     */
+    public double getMeanCo2() {
+        if (!boundsComputed) computeBounds();
+        return meanCo2;
+    }
+}
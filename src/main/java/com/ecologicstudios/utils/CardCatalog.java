@@ -0,0 +1,187 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, in-memory set of cards loaded once from a card file.
+ * <p>
+ * A catalog is parsed a single time and then only read, so it can be shared by
+ * every game and every thread in the process. {@link #shared(String)} keeps one
+ * catalog per path and loads it lazily on first use; later calls return the same
+ * instance without touching disk. Each game gets its own deck through
+ * {@link #newDeck(String)}, which copies card references into a fresh list that
+ * the caller may shuffle and consume freely.
+ * <p>
+ * The {@link Card} objects themselves are shared between decks and must be
+ * treated as read-only.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public final class CardCatalog {
+    /**
+     * Catalogs that have been loaded through {@link #shared(String)}, by path.
+     */
+    private static final ConcurrentHashMap<String, CardCatalog> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * All cards in file order, indexed by difficulty and id.
+     */
+    private final IndexedCardFetcher cards;
+
+    /**
+     * Time spent reading and parsing the card file, in nanoseconds.
+     */
+    private final long loadNanos;
+
+    /**
+     * Estimated heap footprint of the cards, in bytes.
+     */
+    private final long footprintBytes;
+
+    /**
+     * Creates a catalog over the given cards.
+     *
+     * @param cards     the cards to hold; indexed into read-only lists
+     * @param loadNanos how long it took to obtain the cards
+     */
+    private CardCatalog(List<Card> cards, long loadNanos) {
+        this.cards = new IndexedCardFetcher(cards);
+        this.loadNanos = loadNanos;
+        this.footprintBytes = estimateFootprint(cards);
+    }
+
+    /**
+     * Returns the process-wide catalog for {@code path}, loading it on the first
+     * call. Concurrent first calls for the same path load the file only once.
+     *
+     * @param path file system path or classpath resource name of the card file
+     * @return the shared catalog for this path
+     * @throws UncheckedIOException if the card file cannot be read; nothing is
+     *                              cached in that case, so a later call retries
+     */
+    public static CardCatalog shared(String path) {
+        return SHARED.computeIfAbsent(path, p -> {
+            try {
+                return load(p);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error loading cards from " + p, e);
+            }
+        });
+    }
+
+    /**
+     * Loads a new, unshared catalog from the given card file.
+     *
+     * @param path file system path or classpath resource name of the card file
+     * @return a catalog holding every card in the file
+     * @throws IOException if the card file cannot be read or parsed
+     */
+    public static CardCatalog load(String path) throws IOException {
+        long start = System.nanoTime();
+        List<Card> cards = CardJsonStream.read(path);
+        return new CardCatalog(cards, System.nanoTime() - start);
+    }
+
+    /**
+     * Creates a new, unshared catalog over cards that are already in memory.
+     *
+     * @param cards the cards to hold, in deal order
+     * @return a catalog holding the given cards, with a load time of zero
+     */
+    public static CardCatalog of(List<Card> cards) {
+        return new CardCatalog(cards, 0);
+    }
+
+    /**
+     * Returns every card in the catalog.
+     *
+     * @return an unmodifiable list of all cards in file order
+     */
+    public List<Card> getAllCards() {
+        return cards.getAllCards();
+    }
+
+    /**
+     * Returns the card with the given id in constant time.
+     *
+     * @param id the card id
+     * @return the matching card, or {@code null} if there is none
+     */
+    public Card getCardById(int id) {
+        return cards.getCardById(id);
+    }
+
+    /**
+     * Builds a new deck holding the cards of the given difficulty. The returned
+     * list belongs to the caller and is not backed by the catalog.
+     *
+     * @param difficulty the difficulty level to filter cards by (case-insensitive)
+     * @return a new mutable list of matching cards in file order
+     */
+    public List<Card> newDeck(String difficulty) {
+        return new ArrayList<>(cards.getCardsByDifficulty(difficulty));
+    }
+
+    /**
+     * Returns the number of cards in the catalog.
+     *
+     * @return card count
+     */
+    public int getCardCount() {
+        return cards.getAllCards().size();
+    }
+
+    /**
+     * Returns how long reading and parsing the card file took.
+     *
+     * @return load time in nanoseconds
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * Returns an estimate of the heap used by the cards in this catalog.
+     * <p>
+     * The estimate assumes a 64-bit JVM with compressed references and compact
+     * Latin-1 strings; it is meant for comparing decks, not for exact accounting.
+     *
+     * @return estimated footprint in bytes
+     */
+    public long getFootprintBytes() {
+        return footprintBytes;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Sums approximate object sizes of all cards, their alternative lists,
+     * alternatives and strings.
+     */
+    private static long estimateFootprint(List<Card> cards) {
+        long bytes = 16 + 4L * cards.size(); // backing array of the card list
+        for (Card c : cards) {
+            bytes += 32 + stringBytes(c.getScenario()) + stringBytes(c.getDifficulty());
+            List<Alternative> alternatives = c.getAlternatives();
+            if (alternatives != null) {
+                bytes += 40 + 4L * alternatives.size(); // list object and its array
+                for (Alternative a : alternatives) {
+                    bytes += 24 + stringBytes(a.getChoice());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximate size of a {@link String} and its backing byte array.
+     */
+    private static long stringBytes(String s) {
+        return s == null ? 0 : 24 + 16 + s.length();
+    }
+}
@@ -6,7 +6,7 @@ import java.util.List;
  * The {@code CardFetcher} interface defines methods for loading and retrieving
  * {@link Card} objects from a data source, such as a JSON file. Implementations
  * of this interface provide functionality to load cards, filter them by
- * difficulty, and access all loaded cards.
+ * difficulty, look them up by id, and access all loaded cards.
  *
  *
  * @author Ecologic Studios
@@ -22,6 +22,9 @@ public interface CardFetcher {
 
     /**
      * Retrieves a list of cards filtered by the specified difficulty.
+     * <p>
+     * Depending on the implementation the returned list may be a read-only view;
+     * callers that want to modify it should copy it first.
      *
      * @param difficulty the difficulty level to filter cards by (e.g., "Easy",
      *                   "Medium", "Hard")
@@ -29,6 +32,27 @@ public interface CardFetcher {
      */
     public List<Card> getCardsByDifficulty(String difficulty);
 
+    /**
+     * Retrieves the card with the given id. If several cards share the id, the
+     * first one in {@link #getAllCards()} order is returned; every
+     * implementation follows this rule.
+     * <p>
+     * The default implementation scans {@link #getAllCards()}; implementations
+     * that keep an index, such as {@link IndexedCardFetcher}, answer in constant
+     * time.
+     *
+     * @param id the card id
+     * @return the first card with the given id, or {@code null} if there is none
+     */
+    public default Card getCardById(int id) {
+        for (Card c : getAllCards()) {
+            if (c.getId() == id) {
+                return c;
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns all loaded cards.
      *
@@ -3,11 +3,17 @@ package com.ecologicstudios.utils;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
@@ -19,6 +25,15 @@ import java.util.*;
  * in JSON format. It uses Gson for serialization/deserialization and handles
  * file operations with proper error handling and UTF-8 encoding.
  * <p>
+ * Updates made with {@link #upsert(Path, Card)} are not written into the card
+ * file itself but appended to a journal next to it ({@code cards.json.journal},
+ * one compact JSON card per line), so the cost of an update does not depend on
+ * the size of the deck. {@link #load(Path)} and the card fetchers see the card
+ * file with the journal applied on top; {@link #compact(Path)} folds the journal
+ * back into the card file. Appending and compacting run under an exclusive
+ * lock on {@code cards.json.journal.lock} (see {@link FileLocks}), so an
+ * update appended by another process while a compaction runs is not lost.
+ * <p>
  * All methods are static and the class cannot be instantiated.
  *
  * @author Ecologic Studios
@@ -26,7 +41,7 @@ import java.util.*;
  */
 public final class CardJsonIO {
     /**
-     * Type token for Gson to handle List&lt;Card&gt; serialization/deserialization.
+     * Type token for Gson to handle List&lt;Card&gt; serialization.
      */
     private static final Type CARD_LIST = new TypeToken<List<Card>>() {}.getType();
 
@@ -35,27 +50,81 @@ public final class CardJsonIO {
      */
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    /**
+     * Gson instance writing one card per line for the journal.
+     */
+    private static final Gson JOURNAL_GSON = new Gson();
+
     /**
      * Private constructor to prevent instantiation of this utility class.
      */
     private CardJsonIO() {}
 
     /**
-     * Loads a list of cards from a JSON file.
+     * Loads a list of cards from a JSON file, with any journaled updates applied.
      * <p>
-     * If the file doesn't exist, returns an empty list. If the file exists but
-     * contains invalid JSON or null content, returns an empty list.
+     * If neither the file nor its journal exists, returns an empty list. Both the
+     * plain array layout and the game's {@code {"cards": [...]}} layout are
+     * accepted. When the journal holds updates the result is sorted by ID, as if
+     * each update had been written with a full rewrite.
      *
      * @param file the path to the JSON file to load
      * @return a list of cards loaded from the file, or an empty list if file doesn't exist
      * @throws IOException if an I/O error occurs while reading the file
      */
     public static List<Card> load(Path file) throws IOException {
-        if (!Files.exists(file)) return new ArrayList<>();
-        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
-            List<Card> list = GSON.fromJson(r, CARD_LIST);
-            return (list != null) ? list : new ArrayList<>();
+        List<Card> list = new ArrayList<>();
+        if (Files.exists(file)) {
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                list = CardJsonStream.read(r);
+            }
+        }
+        return applyJournal(file, list);
+    }
+
+    /**
+     * Applies the journaled updates of {@code file} to cards read from it.
+     * <p>
+     * A line that cannot be parsed (e.g. a write cut short by a crash) is
+     * reported on stderr and skipped.
+     *
+     * @param file the card file whose journal should be applied
+     * @param base the cards read from the card file itself
+     * @return {@code base} if there is no journal, otherwise the merged cards
+     *         sorted by ID
+     * @throws IOException if an I/O error occurs while reading the journal
+     */
+    public static List<Card> applyJournal(Path file, List<Card> base) throws IOException {
+        Path journal = journalOf(file);
+        if (!Files.exists(journal) || Files.size(journal) == 0) return base;
+
+        Map<Integer, Card> byId = new TreeMap<>();
+        for (Card c : base) byId.put(c.getId(), c);
+        try (BufferedReader r = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = r.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                try {
+                    Card c = CardJsonStream.readCard(new JsonReader(new StringReader(line)));
+                    byId.put(c.getId(), c);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Skipping unreadable journal line " + lineNo + " in " + journal + ": " + e.getMessage());
+                }
+            }
         }
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * Returns the journal file that belongs to a card file.
+     *
+     * @param file the card file
+     * @return the sibling path {@code <file name>.journal}
+     */
+    public static Path journalOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
     }
 
     /**
@@ -80,19 +149,111 @@ public final class CardJsonIO {
     /**
      * Adds a new card or replaces an existing card with the same ID.
      * <p>
-     * This method loads the existing cards, updates or adds the specified card
-     * based on its ID, and saves the result back to the file. The cards are
-     * automatically sorted by ID in the output file.
+     * The card is appended as a single line to the journal of {@code file}; the
+     * card file itself is not rewritten, so each call costs the same regardless
+     * of how many cards the file holds. Readers see the update immediately. Call
+     * {@link #compact(Path)} to fold the journal into the card file.
      *
      * @param file the path to the JSON file to update
      * @param card the card to add or update
-     * @throws IOException if an I/O error occurs while reading or writing the file
+     * @throws IOException if an I/O error occurs while writing the journal
      */
     public static void upsert(Path file, Card card) throws IOException {
-        List<Card> cards = load(file);
-        Map<Integer, Card> byId = new TreeMap<>();
-        for (Card c : cards) byId.put(c.id, c);
-        byId.put(card.id, card);
-        save(file, new ArrayList<>(byId.values()));
+        appendJournal(file, List.of(card));
+    }
+
+    /**
+     * Adds or replaces several cards at once by appending them to the journal of
+     * {@code file} through a single writer. Later cards win over earlier ones
+     * with the same ID. If the journal ends in a line cut short by a crash, a
+     * line break is written first, so that the torn line does not swallow the
+     * first new card.
+     *
+     * @param file  the path to the JSON file to update
+     * @param cards the cards to add or update, in order
+     * @throws IOException if an I/O error occurs while writing the journal
+     */
+    public static void appendJournal(Path file, List<Card> cards) throws IOException {
+        if (cards.isEmpty()) return;
+        Path parent = file.getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path journal = journalOf(file);
+        FileLocks.withLock(FileLocks.lockFileOf(journal), () -> {
+            boolean partialTail = !endsWithNewline(journal);
+            try (Writer w = Files.newBufferedWriter(journal, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)) {
+                if (partialTail) w.write('\n');
+                for (Card card : cards) {
+                    w.write(JOURNAL_GSON.toJson(card));
+                    w.write('\n');
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Folds the journal of {@code file} into the card file and removes the
+     * journal.
+     * <p>
+     * The merged cards are sorted by ID. A card file in the game's
+     * {@code {"cards": [...]}} layout keeps that layout. The new file is
+     * written to a temporary sibling and renamed over the card file in one
+     * atomic step (see {@link AtomicFiles}), so a crash while writing leaves the
+     * old file and the journal untouched, and a reloading reader never sees a
+     * half-written deck. If the process stops between the rename and deleting
+     * the journal, the journal is simply applied again on the next read, which
+     * yields the same cards. The journal lock is held throughout, so no update
+     * can be appended between reading the journal and deleting it.
+     *
+     * @param file the card file to compact
+     * @return the number of cards in the compacted file
+     * @throws IOException if an I/O error occurs while reading or writing; the
+     *                     card file is then unchanged
+     */
+    public static int compact(Path file) throws IOException {
+        Path journal = journalOf(file);
+        if (!Files.exists(journal)) return load(file).size();
+
+        return FileLocks.withLock(FileLocks.lockFileOf(journal), () -> {
+            List<Card> cards = load(file);
+            Object content = isWrapped(file) ? new CardWrapper(cards) : cards;
+            AtomicFiles.replace(file, out -> {
+                Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                GSON.toJson(content, w);
+                w.flush();
+            });
+            Files.deleteIfExists(journal);
+            return cards.size();
+        });
+    }
+
+    /**
+     * Returns whether a file is missing, empty or ends in a line break.
+     */
+    private static boolean endsWithNewline(Path file) throws IOException {
+        if (!Files.exists(file)) return true;
+        try (SeekableByteChannel channel = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(size - 1).read(last);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /**
+     * Returns whether an existing card file uses the {@code {"cards": [...]}}
+     * layout rather than a plain array.
+     */
+    private static boolean isWrapped(Path file) throws IOException {
+        if (!Files.exists(file)) return false;
+        try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int c;
+            while ((c = r.read()) != -1 && Character.isWhitespace(c)) {
+                // skip leading whitespace
+            }
+            return c == '{';
+        }
     }
 }
@@ -0,0 +1,197 @@
+package com.ecologicstudios.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streaming parser for card JSON files.
+ * <p>
+ * Cards are read token by token with Gson's {@link JsonReader} and turned into
+ * {@link Card} and {@link Alternative} objects as soon as each card object has
+ * been consumed, so the raw file contents are never held in memory as a whole.
+ * Both layouts used in this project are accepted: the game format
+ * {@code {"cards": [...]}} and the plain array written by {@link CardJsonIO}.
+ * Unknown fields are skipped.
+ * <p>
+ * All methods are static and the class cannot be instantiated.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public final class CardJsonStream {
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private CardJsonStream() {}
+
+    /**
+     * Opens a card source for reading. The path is first resolved against the
+     * file system; if no such file exists it is looked up on the classpath
+     * (e.g. {@code json/cards.json}).
+     *
+     * @param path file system path or classpath resource name
+     * @return a UTF-8 reader over the source; the caller must close it
+     * @throws IOException if the source cannot be found or opened
+     */
+    public static Reader open(String path) throws IOException {
+        Path file = Path.of(path);
+        if (Files.isRegularFile(file)) {
+            return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+        String resource = path.startsWith("/") ? path.substring(1) : path;
+        InputStream in = CardJsonStream.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new FileNotFoundException(path + " (no such file or classpath resource)");
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads all cards from the given source into a list. For a file on disk,
+     * updates pending in its journal are applied (see {@link CardJsonIO}).
+     *
+     * @param path file system path or classpath resource name
+     * @return the cards in file order, or sorted by id if journaled updates were
+     *         applied (never null)
+     * @throws IOException if the source cannot be read or is malformed
+     */
+    public static List<Card> read(String path) throws IOException {
+        List<Card> cards;
+        try (Reader reader = open(path)) {
+            cards = read(reader);
+        }
+        Path file = Path.of(path);
+        return Files.isRegularFile(file) ? CardJsonIO.applyJournal(file, cards) : cards;
+    }
+
+    /**
+     * Reads all cards from the given reader into a list.
+     *
+     * @param reader reader positioned at the start of a card document
+     * @return the cards in document order (never null)
+     * @throws IOException if the document cannot be read or is malformed
+     */
+    public static List<Card> read(Reader reader) throws IOException {
+        List<Card> cards = new ArrayList<>();
+        forEach(reader, cards::add);
+        return cards;
+    }
+
+    /**
+     * Parses a card document and hands every card to {@code sink} as soon as it
+     * has been read. Only one card is materialized at a time.
+     *
+     * @param reader reader positioned at the start of a card document
+     * @param sink   receives each parsed card in document order
+     * @throws IOException if the document cannot be read or is malformed
+     */
+    public static void forEach(Reader reader, Consumer<? super Card> sink) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        JsonToken token = json.peek();
+        if (token == JsonToken.END_DOCUMENT) {
+            return; // empty file
+        }
+        if (token == JsonToken.BEGIN_ARRAY) {
+            readCardArray(json, sink);
+            return;
+        }
+
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals("cards") && json.peek() == JsonToken.BEGIN_ARRAY) {
+                readCardArray(json, sink);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Parses a single card object, e.g. one line of a JSON Lines file.
+     *
+     * @param json reader positioned at the start of a card object
+     * @return the parsed card
+     * @throws IOException if the object cannot be read or is malformed
+     */
+    public static Card readCard(JsonReader json) throws IOException {
+        Card card = new Card();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "id" -> card.id = json.nextInt();
+                case "scenario" -> card.scenario = nextStringOrNull(json);
+                case "difficulty" -> card.difficulty = nextStringOrNull(json);
+                case "alternatives" -> card.alternatives = readAlternatives(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+        card.computeBounds();
+        return card;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Consumes a JSON array of card objects.
+     */
+    private static void readCardArray(JsonReader json, Consumer<? super Card> sink) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            sink.accept(readCard(json));
+        }
+        json.endArray();
+    }
+
+    /**
+     * Consumes a JSON array of alternative objects.
+     */
+    private static List<Alternative> readAlternatives(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        List<Alternative> alternatives = new ArrayList<>(4);
+        json.beginArray();
+        while (json.hasNext()) {
+            String choice = null;
+            double co2 = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "choice" -> choice = nextStringOrNull(json);
+                    case "co2" -> co2 = json.nextDouble();
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+            alternatives.add(new Alternative(choice, co2));
+        }
+        json.endArray();
+        return alternatives;
+    }
+
+    /**
+     * Reads a string value, accepting an explicit JSON {@code null}.
+     */
+    private static String nextStringOrNull(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+}
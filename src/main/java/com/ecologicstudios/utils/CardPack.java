@@ -0,0 +1,188 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer and layout constants for the binary card pack format read by
+ * {@link BinaryCardFetcher}.
+ * <p>
+ * A card pack stores a deck in a form that can be memory-mapped and read without
+ * parsing. All numbers are big-endian; offsets are absolute byte positions in the
+ * file. The layout is:
+ * <pre>
+ * header          12 ints: magic, version, card count, alternative count,
+ *                 string count, and the offsets of the sections below
+ * card table      per card: id, difficulty string, scenario string,
+ *                 first alternative, alternative count (5 ints)
+ * id index        (id, card index) int pairs sorted by id, for binary search
+ * choice table    one string index per alternative
+ * co2 table       one double per alternative, 8-byte aligned
+ * string offsets  string count + 1 ints into the string data
+ * string data     UTF-8 bytes of all distinct strings
+ * </pre>
+ * Strings are stored once and referred to by index; {@code -1} encodes
+ * {@code null}. Since offsets are ints, a pack is limited to 2 GB.
+ * <p>
+ * All methods are static and the class cannot be instantiated.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public final class CardPack {
+    /** File signature, "ECPK" in ASCII. */
+    static final int MAGIC = 0x4543504B;
+
+    /** Format version written by this class. */
+    static final int VERSION = 1;
+
+    /** Size of the header in bytes. */
+    static final int HEADER_BYTES = 12 * Integer.BYTES;
+
+    /** Size of one card table entry in bytes. */
+    static final int CARD_BYTES = 5 * Integer.BYTES;
+
+    /** Header field positions (byte offsets into the file). */
+    static final int H_CARD_COUNT = 8;
+    static final int H_ALT_COUNT = 12;
+    static final int H_STRING_COUNT = 16;
+    static final int H_CARD_TABLE = 20;
+    static final int H_ID_INDEX = 24;
+    static final int H_CHOICE_TABLE = 28;
+    static final int H_CO2_TABLE = 32;
+    static final int H_STRING_OFFSETS = 36;
+    static final int H_STRING_DATA = 40;
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private CardPack() {}
+
+    /**
+     * Writes the given cards to {@code file} as a card pack, replacing any
+     * existing file. Parent directories are created if needed.
+     *
+     * @param file  the pack file to write
+     * @param cards the cards to store, in deal order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, List<Card> cards) throws IOException {
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        int altCount = 0;
+        for (Card c : cards) {
+            intern(pool, c.getDifficulty());
+            intern(pool, c.getScenario());
+            if (c.getAlternatives() != null) {
+                for (Alternative a : c.getAlternatives()) {
+                    intern(pool, a.getChoice());
+                    altCount++;
+                }
+            }
+        }
+        List<byte[]> strings = new ArrayList<>(pool.size());
+        long stringBytes = 0;
+        for (String s : pool.keySet()) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            strings.add(b);
+            stringBytes += b.length;
+        }
+
+        // section layout
+        long cardTable = HEADER_BYTES;
+        long idIndex = cardTable + (long) CARD_BYTES * cards.size();
+        long choiceTable = idIndex + 2L * Integer.BYTES * cards.size();
+        long co2Table = align8(choiceTable + (long) Integer.BYTES * altCount);
+        long stringOffsets = co2Table + (long) Double.BYTES * altCount;
+        long stringData = stringOffsets + (long) Integer.BYTES * (strings.size() + 1);
+        long total = stringData + stringBytes;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("card pack would exceed 2 GB: " + total + " bytes");
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate((int) total);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(cards.size()).putInt(altCount).putInt(strings.size())
+                .putInt((int) cardTable).putInt((int) idIndex).putInt((int) choiceTable).putInt((int) co2Table)
+                .putInt((int) stringOffsets).putInt((int) stringData).putInt(0);
+
+        // card table, choice table and co2 table
+        int alt = 0;
+        for (int i = 0; i < cards.size(); i++) {
+            Card c = cards.get(i);
+            List<Alternative> alternatives = c.getAlternatives() != null ? c.getAlternatives() : List.of();
+            buf.position((int) (cardTable + (long) CARD_BYTES * i));
+            buf.putInt(c.getId()).putInt(ref(pool, c.getDifficulty())).putInt(ref(pool, c.getScenario()))
+                    .putInt(alt).putInt(alternatives.size());
+            for (Alternative a : alternatives) {
+                buf.putInt((int) (choiceTable + (long) Integer.BYTES * alt), ref(pool, a.getChoice()));
+                buf.putDouble((int) (co2Table + (long) Double.BYTES * alt), a.getCo2());
+                alt++;
+            }
+        }
+
+        // id index: (id, card index) sorted by id, ties in deal order
+        long[] ids = new long[cards.size()];
+        for (int i = 0; i < cards.size(); i++) {
+            ids[i] = ((long) cards.get(i).getId() << 32) | i;
+        }
+        Arrays.sort(ids);
+        buf.position((int) idIndex);
+        for (long entry : ids) {
+            buf.putInt((int) (entry >> 32)).putInt((int) entry);
+        }
+
+        // string pool
+        buf.position((int) stringOffsets);
+        int offset = 0;
+        for (byte[] b : strings) {
+            buf.putInt(offset);
+            offset += b.length;
+        }
+        buf.putInt(offset);
+        for (byte[] b : strings) {
+            buf.put(b);
+        }
+
+        Path parent = file.getParent();
+        if (parent != null) Files.createDirectories(parent);
+        buf.flip();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+        }
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Adds a string to the pool if it is not there yet.
+     */
+    private static void intern(Map<String, Integer> pool, String s) {
+        if (s != null) pool.putIfAbsent(s, pool.size());
+    }
+
+    /**
+     * Returns the pool index of a string, or -1 for {@code null}.
+     */
+    private static int ref(Map<String, Integer> pool, String s) {
+        return s == null ? -1 : pool.get(s);
+    }
+
+    /**
+     * Rounds a position up to the next multiple of 8.
+     */
+    private static long align8(long position) {
+        return (position + 7) & ~7L;
+    }
+}
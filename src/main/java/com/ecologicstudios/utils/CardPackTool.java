@@ -0,0 +1,114 @@
+package com.ecologicstudios.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Command-line utility that converts a JSON card file into a binary card pack.
+ * <p>
+ * The tool reads the JSON deck, writes it in the {@link CardPack} format and
+ * then opens the result with {@link BinaryCardFetcher} to verify that both
+ * sources return the same cards, in the same order, with the same difficulty
+ * buckets. It exits with status 1 if verification fails.
+ * <p>
+ * Usage example:
+ * <pre>
+ * java CardPackTool src/main/resources/json/cards.json data/cards.pack
+ * </pre>
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class CardPackTool {
+
+    /**
+     * Main entry point for the CardPackTool command-line utility.
+     *
+     * @param args command-line arguments in the following order:
+     *             <ul>
+     *             <li>args[0] - path to the JSON cards file</li>
+     *             <li>args[1] - path of the card pack to write</li>
+     *             </ul>
+     * @throws Exception if file I/O operations fail
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("Usage:");
+            System.out.println("  CardPackTool <cards.json> <cards.pack>");
+            return;
+        }
+
+        List<Card> cards = CardJsonStream.read(args[0]);
+        CardPack.write(Path.of(args[1]), cards);
+
+        List<String> problems = verify(new IndexedCardFetcher(cards), new BinaryCardFetcher(args[1]));
+        if (!problems.isEmpty()) {
+            problems.forEach(System.out::println);
+            System.exit(1);
+        }
+        System.out.println("Wrote and verified " + cards.size() + " cards in " + Path.of(args[1]).toAbsolutePath());
+    }
+
+    /**
+     * Compares two card sources card by card.
+     *
+     * @param expected the reference source
+     * @param actual   the source to check
+     * @return a description of every difference found; empty if both sources
+     *         return the same cards
+     */
+    public static List<String> verify(CardFetcher expected, CardFetcher actual) {
+        List<String> problems = new ArrayList<>();
+        compare("all cards", expected.getAllCards(), actual.getAllCards(), problems);
+        for (Difficulty d : Difficulty.values()) {
+            compare(d.getLabel(), expected.getCardsByDifficulty(d.getLabel()),
+                    actual.getCardsByDifficulty(d.getLabel()), problems);
+        }
+        for (Card c : expected.getAllCards()) {
+            Card other = actual.getCardById(c.getId());
+            if (other == null || other.getId() != c.getId()) {
+                problems.add("card id=" + c.getId() + " cannot be looked up by id");
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Compares two card lists element by element.
+     */
+    private static void compare(String what, List<Card> expected, List<Card> actual, List<String> problems) {
+        if (expected.size() != actual.size()) {
+            problems.add(what + ": expected " + expected.size() + " cards but found " + actual.size());
+            return;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            if (!sameCard(expected.get(i), actual.get(i))) {
+                problems.add(what + ": card at position " + i + " (id=" + expected.get(i).getId() + ") differs");
+            }
+        }
+    }
+
+    /**
+     * Returns whether two cards have the same id, texts, difficulty and
+     * alternatives. CO2 values must match exactly.
+     */
+    private static boolean sameCard(Card a, Card b) {
+        if (a.getId() != b.getId()
+                || !Objects.equals(a.getScenario(), b.getScenario())
+                || !Objects.equals(a.getDifficulty(), b.getDifficulty())) {
+            return false;
+        }
+        List<Alternative> x = a.getAlternatives() != null ? a.getAlternatives() : List.of();
+        List<Alternative> y = b.getAlternatives() != null ? b.getAlternatives() : List.of();
+        if (x.size() != y.size()) return false;
+        for (int i = 0; i < x.size(); i++) {
+            if (!Objects.equals(x.get(i).getChoice(), y.get(i).getChoice())
+                    || Double.compare(x.get(i).getCo2(), y.get(i).getCo2()) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
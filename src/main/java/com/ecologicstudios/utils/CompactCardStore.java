@@ -0,0 +1,366 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A {@link CardFetcher} that keeps a deck in a compact, struct-of-arrays layout.
+ * <p>
+ * Instead of one {@link Card}, one list and one {@link Alternative} object per
+ * choice, the store holds a handful of primitive arrays: card ids, difficulty
+ * ordinals, scenario references, alternative ranges, choice references and CO2
+ * values. All texts are kept once in a deduplicated string pool. For large decks
+ * this removes most object headers and pointers from the heap.
+ * <p>
+ * Cards are handed out as lightweight views: a {@link Card} whose strings point
+ * into the pool and whose {@link Card#getAlternatives()} list reads choices and
+ * CO2 values from the arrays on access. Views are created when a card is read
+ * and are not retained by the store, so existing callers keep working while
+ * only the cards in use occupy extra memory. Views compare alternatives by value
+ * (see {@link Alternative#equals(Object)}).
+ * <p>
+ * Lookups by id use a binary search over a sorted id index.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class CompactCardStore implements CardFetcher {
+    /** Card ids in deal order. */
+    private int[] ids = new int[0];
+
+    /** Difficulty ordinal per card, or -1 for labels that are not a {@link Difficulty}. */
+    private byte[] difficulties = new byte[0];
+
+    /** Labels of cards whose difficulty is not a {@link Difficulty}, by position. */
+    private Map<Integer, String> otherDifficulties = new HashMap<>();
+
+    /** Pool index of each card's scenario, or -1 for none. */
+    private int[] scenarios = new int[0];
+
+    /** Index of each card's first alternative; entry {@code n} marks the end. */
+    private int[] altStart = {0};
+
+    /** Pool index of each alternative's choice text, or -1 for none. */
+    private int[] choices = new int[0];
+
+    /** CO2 value of each alternative. */
+    private double[] co2 = new double[0];
+
+    /** Deduplicated texts. */
+    private String[] pool = new String[0];
+
+    /** (id, position) pairs sorted by id, packed into longs. */
+    private long[] idIndex = new long[0];
+
+    /** Card positions per difficulty, in deal order. */
+    private Map<Difficulty, int[]> byDifficulty = new EnumMap<>(Difficulty.class);
+
+    /**
+     * Constructs a new CompactCardStore and loads cards from the specified path.
+     *
+     * @param path file system path or classpath resource name of the card file
+     */
+    public CompactCardStore(String path) {
+        load(path);
+    }
+
+    /**
+     * Constructs a new CompactCardStore holding the given cards.
+     *
+     * @param cards the cards to store, in deal order
+     */
+    public CompactCardStore(List<Card> cards) {
+        Builder builder = new Builder();
+        cards.forEach(builder::add);
+        builder.finish();
+    }
+
+    /**
+     * Loads cards from the specified file, replacing the current contents.
+     * <p>
+     * Cards are streamed straight into the arrays, so the full object graph is
+     * never built. If the file has pending journal updates (see
+     * {@link CardJsonIO}) the merged deck is read first instead. If the file
+     * cannot be read an error is logged to stderr and the store is left empty.
+     *
+     * @param path file system path or classpath resource name of the card file
+     */
+    @Override
+    public void loadCards(String path) {
+        load(path);
+    }
+
+    /**
+     * Returns the cards of the given difficulty as views.
+     *
+     * @param difficulty the difficulty label (case-insensitive)
+     * @return a read-only list of matching cards in deal order; empty if the
+     *         label is unknown
+     */
+    @Override
+    public List<Card> getCardsByDifficulty(String difficulty) {
+        Difficulty key = Difficulty.fromLabel(difficulty);
+        int[] positions = key == null ? null : byDifficulty.get(key);
+        return positions == null ? List.of() : new CardView(positions);
+    }
+
+    /**
+     * Returns the card with the given id as a view.
+     *
+     * @param id the card id
+     * @return the first card with the given id, or {@code null} if there is none
+     */
+    @Override
+    public Card getCardById(int id) {
+        int i = Arrays.binarySearch(idIndex, (long) id << 32);
+        i = i < 0 ? -i - 1 : i;
+        if (i < idIndex.length && (int) (idIndex[i] >> 32) == id) {
+            return card((int) idIndex[i]);
+        }
+        return null;
+    }
+
+    /**
+     * Returns all cards as views.
+     *
+     * @return a read-only list of all cards in deal order
+     */
+    @Override
+    public List<Card> getAllCards() {
+        return new CardView(null);
+    }
+
+    /**
+     * Estimates the heap used by the arrays and the string pool of this store.
+     * <p>
+     * Like {@link CardCatalog#getFootprintBytes()} this assumes a 64-bit JVM
+     * with compressed references and compact Latin-1 strings.
+     *
+     * @return estimated footprint in bytes
+     */
+    public long getFootprintBytes() {
+        long bytes = array(4L * ids.length) + array(difficulties.length) + array(4L * scenarios.length)
+                + array(4L * altStart.length) + array(4L * choices.length) + array(8L * co2.length)
+                + array(4L * pool.length) + array(8L * idIndex.length);
+        for (String s : pool) {
+            bytes += 24 + array(s.length());
+        }
+        for (int[] positions : byDifficulty.values()) {
+            bytes += array(4L * positions.length);
+        }
+        return bytes;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Streams the cards of a file into the arrays; also used by the
+     * constructor, which must not call the overridable
+     * {@link #loadCards(String)}.
+     */
+    private void load(String path) {
+        Builder builder = new Builder();
+        try {
+            if (Files.isRegularFile(Path.of(path)) && Files.exists(CardJsonIO.journalOf(Path.of(path)))) {
+                CardJsonStream.read(path).forEach(builder::add);
+            } else {
+                try (Reader reader = CardJsonStream.open(path)) {
+                    CardJsonStream.forEach(reader, builder::add);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading cards: " + e.getMessage());
+            builder = new Builder();
+        }
+        builder.finish();
+    }
+
+    /**
+     * Size of an array object with the given payload, including its header.
+     */
+    private static long array(long payload) {
+        return (16 + payload + 7) & ~7L;
+    }
+
+    /**
+     * Creates a view of the card at the given position. Its CO2 bounds are
+     * computed from the arrays, without creating alternative objects.
+     */
+    private Card card(int position) {
+        byte d = difficulties[position];
+        String difficulty = d >= 0 ? Difficulty.values()[d].getLabel() : otherDifficulties.get(position);
+        double min = 0;
+        double max = 0;
+        double sum = 0;
+        for (int a = altStart[position]; a < altStart[position + 1]; a++) {
+            if (a == altStart[position] || co2[a] < min) min = co2[a];
+            if (a == altStart[position] || co2[a] > max) max = co2[a];
+            sum += co2[a];
+        }
+        int count = altStart[position + 1] - altStart[position];
+        return new Card(ids[position], text(scenarios[position]), difficulty, new AlternativeView(position),
+                min, max, count == 0 ? 0 : sum / count);
+    }
+
+    /**
+     * Returns a pooled text, or {@code null} for index -1.
+     */
+    private String text(int ref) {
+        return ref < 0 ? null : pool[ref];
+    }
+
+    /**
+     * Collects cards into growable arrays and installs them in the store.
+     */
+    private final class Builder {
+        private int cardCount;
+        private int altCount;
+        private int[] ids = new int[64];
+        private byte[] difficulties = new byte[64];
+        private final Map<Integer, String> otherDifficulties = new HashMap<>();
+        private int[] scenarios = new int[64];
+        private int[] altStart = new int[65];
+        private int[] choices = new int[128];
+        private double[] co2 = new double[128];
+        private final Map<String, Integer> pool = new HashMap<>();
+
+        /**
+         * Appends one card.
+         */
+        void add(Card c) {
+            if (cardCount == ids.length) {
+                int size = ids.length * 2;
+                ids = Arrays.copyOf(ids, size);
+                difficulties = Arrays.copyOf(difficulties, size);
+                scenarios = Arrays.copyOf(scenarios, size);
+                altStart = Arrays.copyOf(altStart, size + 1);
+            }
+            Difficulty d = Difficulty.fromLabel(c.getDifficulty());
+            if (d == null && c.getDifficulty() != null) {
+                otherDifficulties.put(cardCount, c.getDifficulty());
+            }
+            ids[cardCount] = c.getId();
+            difficulties[cardCount] = d == null ? -1 : (byte) d.ordinal();
+            scenarios[cardCount] = intern(c.getScenario());
+            altStart[cardCount] = altCount;
+
+            List<Alternative> alternatives = c.getAlternatives() != null ? c.getAlternatives() : List.of();
+            for (Alternative a : alternatives) {
+                if (altCount == choices.length) {
+                    choices = Arrays.copyOf(choices, altCount * 2);
+                    co2 = Arrays.copyOf(co2, altCount * 2);
+                }
+                choices[altCount] = intern(a.getChoice());
+                co2[altCount] = a.getCo2();
+                altCount++;
+            }
+            cardCount++;
+            altStart[cardCount] = altCount;
+        }
+
+        /**
+         * Trims the arrays, builds the indexes and installs everything in the
+         * enclosing store.
+         */
+        void finish() {
+            String[] texts = new String[pool.size()];
+            pool.forEach((s, i) -> texts[i] = s);
+
+            long[] index = new long[cardCount];
+            int[] counts = new int[Difficulty.values().length];
+            for (int i = 0; i < cardCount; i++) {
+                index[i] = ((long) ids[i] << 32) | i;
+                if (difficulties[i] >= 0) counts[difficulties[i]]++;
+            }
+            Arrays.sort(index);
+
+            Map<Difficulty, int[]> buckets = new EnumMap<>(Difficulty.class);
+            int[] filled = new int[counts.length];
+            for (Difficulty d : Difficulty.values()) {
+                buckets.put(d, new int[counts[d.ordinal()]]);
+            }
+            for (int i = 0; i < cardCount; i++) {
+                int d = difficulties[i];
+                if (d >= 0) buckets.get(Difficulty.values()[d])[filled[d]++] = i;
+            }
+
+            CompactCardStore.this.ids = Arrays.copyOf(ids, cardCount);
+            CompactCardStore.this.difficulties = Arrays.copyOf(difficulties, cardCount);
+            CompactCardStore.this.otherDifficulties = otherDifficulties;
+            CompactCardStore.this.scenarios = Arrays.copyOf(scenarios, cardCount);
+            CompactCardStore.this.altStart = Arrays.copyOf(altStart, cardCount + 1);
+            CompactCardStore.this.choices = Arrays.copyOf(choices, altCount);
+            CompactCardStore.this.co2 = Arrays.copyOf(co2, altCount);
+            CompactCardStore.this.pool = texts;
+            CompactCardStore.this.idIndex = index;
+            CompactCardStore.this.byDifficulty = buckets;
+        }
+
+        /**
+         * Returns the pool index of a text, adding it if needed.
+         */
+        private int intern(String s) {
+            return s == null ? -1 : pool.computeIfAbsent(s, k -> pool.size());
+        }
+    }
+
+    /**
+     * Read-only list of card views.
+     */
+    private final class CardView extends AbstractList<Card> implements RandomAccess {
+        /** Card positions of this view, or {@code null} for all cards. */
+        private final int[] positions;
+
+        CardView(int[] positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public Card get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return card(positions == null ? index : positions[index]);
+        }
+
+        @Override
+        public int size() {
+            return positions == null ? ids.length : positions.length;
+        }
+    }
+
+    /**
+     * Read-only list of the alternatives of one card, read from the arrays.
+     */
+    private final class AlternativeView extends AbstractList<Alternative> implements RandomAccess {
+        /** Position of the card in the store. */
+        private final int card;
+
+        AlternativeView(int card) {
+            this.card = card;
+        }
+
+        @Override
+        public Alternative get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int a = altStart[card] + index;
+            return new Alternative(text(choices[a]), co2[a]);
+        }
+
+        @Override
+        public int size() {
+            return altStart[card + 1] - altStart[card];
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * A {@link CardFetcher} that combines several card files (packs) into one deck.
+ * <p>
+ * Regional and seasonal decks are shipped as separate JSON files. This fetcher
+ * takes a directory (all {@code *.json} files in it) or an explicit list of
+ * packs and parses them concurrently on a bounded pool of at most
+ * {@link Runtime#availableProcessors()} threads, so loading takes roughly as
+ * long as the largest pack instead of the sum of all packs.
+ * <p>
+ * The result does not depend on which pack finishes first: packs are merged in
+ * order of their path, and when two packs have a card with the same id the
+ * card from the later pack replaces the earlier one, keeping the earlier
+ * card's position. Within one pack the first card with an id is kept, as
+ * {@link CardFetcher#getCardById(int)} does for a single file. A pack
+ * that cannot be read is logged to stderr and skipped; the other packs are
+ * still loaded.
+ * <p>
+ * The merged deck is indexed like {@link IndexedCardFetcher}. Per-pack parse
+ * times and the overall speedup are available through {@link #getPackStats()}
+ * and {@link #getSpeedup()}.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class CompositeCardFetcher implements CardFetcher {
+    /**
+     * Load statistics for a single pack.
+     *
+     * @param path       the pack file
+     * @param cards      number of cards read from the pack (0 if it failed)
+     * @param parseNanos time spent parsing the pack, in nanoseconds
+     * @param error      why the pack was skipped, or {@code null} if it loaded
+     */
+    public record PackStats(Path path, int cards, long parseNanos, String error) {}
+
+    /**
+     * Parsed contents of one pack.
+     */
+    private record Parsed(List<Card> cards, PackStats stats) {}
+
+    /**
+     * The merged, indexed deck.
+     */
+    private IndexedCardFetcher merged = new IndexedCardFetcher(List.of());
+
+    /**
+     * Statistics of the last load, in merge order.
+     */
+    private List<PackStats> packStats = List.of();
+
+    /**
+     * Wall-clock duration of the last load, including the merge.
+     */
+    private long loadNanos;
+
+    /**
+     * Number of cards replaced by a card with the same id from a later pack.
+     */
+    private int conflictCount;
+
+    /**
+     * Constructs a new CompositeCardFetcher and loads all packs in the given
+     * directory, or the single given file.
+     *
+     * @param path a directory of {@code *.json} packs or a single card file
+     */
+    public CompositeCardFetcher(String path) {
+        load(listPacks(path));
+    }
+
+    /**
+     * Constructs a new CompositeCardFetcher and loads the given packs.
+     *
+     * @param packs the pack files; their order does not matter
+     */
+    public CompositeCardFetcher(List<Path> packs) {
+        load(packs);
+    }
+
+    /**
+     * Loads all {@code *.json} packs in the given directory, or the single given
+     * file, replacing the current deck.
+     * <p>
+     * If the directory cannot be listed an error is logged to stderr and the
+     * fetcher is left empty.
+     *
+     * @param path a directory of {@code *.json} packs or a single card file
+     */
+    @Override
+    public void loadCards(String path) {
+        load(listPacks(path));
+    }
+
+    /**
+     * Loads the given packs in parallel and merges them, replacing the current
+     * deck.
+     *
+     * @param packs the pack files; their order does not matter
+     */
+    public void loadPacks(List<Path> packs) {
+        load(packs);
+    }
+
+    /**
+     * Returns the cards of the given difficulty.
+     *
+     * @param difficulty the difficulty label (case-insensitive)
+     * @return a read-only list of matching cards in merge order; empty if the
+     *         label is unknown
+     */
+    @Override
+    public List<Card> getCardsByDifficulty(String difficulty) {
+        return merged.getCardsByDifficulty(difficulty);
+    }
+
+    /**
+     * Returns the card with the given id in constant time.
+     *
+     * @param id the card id
+     * @return the matching card from the last pack that defines it, or
+     *         {@code null} if there is none
+     */
+    @Override
+    public Card getCardById(int id) {
+        return merged.getCardById(id);
+    }
+
+    /**
+     * Returns all merged cards.
+     *
+     * @return a read-only list of all cards in merge order
+     */
+    @Override
+    public List<Card> getAllCards() {
+        return merged.getAllCards();
+    }
+
+    /**
+     * Returns per-pack statistics of the last load.
+     *
+     * @return one entry per pack, in merge order
+     */
+    public List<PackStats> getPackStats() {
+        return packStats;
+    }
+
+    /**
+     * Returns how long the last load took, from the first parse to the end of
+     * the merge.
+     *
+     * @return load duration in nanoseconds
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * Returns how many cards were replaced by a card with the same id from a
+     * later pack. A duplicate id within one pack is not counted, as the first
+     * card of that pack is kept and the later one is skipped.
+     *
+     * @return number of id conflicts
+     */
+    public int getConflictCount() {
+        return conflictCount;
+    }
+
+    /**
+     * Returns the speedup of the last load over parsing the packs one after
+     * another: the sum of the per-pack parse times divided by the wall-clock
+     * load time.
+     *
+     * @return the speedup, or 0 if nothing was loaded
+     */
+    public double getSpeedup() {
+        long sum = packStats.stream().mapToLong(PackStats::parseNanos).sum();
+        return loadNanos == 0 ? 0 : (double) sum / loadNanos;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Loads and merges the given packs; also used by the constructors, which
+     * must not call the overridable {@link #loadPacks(List)}.
+     */
+    private void load(List<Path> packs) {
+        long start = System.nanoTime();
+        List<Path> ordered = packs.stream().sorted(Comparator.comparing(Path::toString)).toList();
+
+        List<Parsed> parsed = new ArrayList<>(ordered.size());
+        if (ordered.size() == 1) {
+            parsed.add(parse(ordered.get(0)));
+        } else if (!ordered.isEmpty()) {
+            int threads = Math.min(ordered.size(), Runtime.getRuntime().availableProcessors());
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "card-pack-loader");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<Parsed>> futures = new ArrayList<>(ordered.size());
+                for (Path pack : ordered) {
+                    futures.add(pool.submit(() -> parse(pack)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    parsed.add(await(futures.get(i), ordered.get(i)));
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        Map<Integer, Card> byId = new LinkedHashMap<>();
+        List<PackStats> stats = new ArrayList<>(parsed.size());
+        int conflicts = 0;
+        for (Parsed p : parsed) {
+            Set<Integer> seen = new HashSet<>();
+            for (Card c : p.cards()) {
+                if (!seen.add(c.getId())) {
+                    continue; // a duplicate within the pack: the first card wins
+                }
+                if (byId.put(c.getId(), c) != null) {
+                    conflicts++;
+                }
+            }
+            stats.add(p.stats());
+        }
+
+        this.merged = new IndexedCardFetcher(new ArrayList<>(byId.values()));
+        this.packStats = List.copyOf(stats);
+        this.conflictCount = conflicts;
+        this.loadNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the {@code *.json} packs in a directory, or the single given
+     * file. If the directory cannot be listed an error is logged to stderr and
+     * no packs are returned.
+     */
+    private static List<Path> listPacks(String path) {
+        Path dir = Path.of(path);
+        if (!Files.isDirectory(dir)) {
+            return List.of(dir);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json"))
+                    .filter(Files::isRegularFile)
+                    .toList();
+        } catch (IOException e) {
+            System.err.println("Error listing card packs: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Parses one pack, including its pending journal updates. Failures are
+     * logged and reported as an empty pack.
+     */
+    private static Parsed parse(Path pack) {
+        long start = System.nanoTime();
+        try {
+            List<Card> cards = CardJsonStream.read(pack.toString());
+            return new Parsed(cards, new PackStats(pack, cards.size(), System.nanoTime() - start, null));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading card pack " + pack + ": " + e.getMessage());
+            return new Parsed(List.of(), new PackStats(pack, 0, System.nanoTime() - start, e.getMessage()));
+        }
+    }
+
+    /**
+     * Waits for a pack to be parsed.
+     */
+    private static Parsed await(Future<Parsed> future, Path pack) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Parsed(List.of(), new PackStats(pack, 0, 0, "interrupted"));
+        } catch (ExecutionException e) {
+            // parse() catches its own errors, so this only happens for Errors such as OOM
+            throw new IllegalStateException("Card pack " + pack + " failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.ecologicstudios.utils;
+
+import java.time.LocalDate;
+
+/**
+ * Summary of the sessions of one difficulty played on one day, kept by
+ * {@link HistoryRetention} after the sessions themselves were removed from
+ * the history.
+ * <p>
+ * The summarized value is the performance score of a session, i.e.
+ * {@link ScoreRescaler#evaluate(double, double, double)} of its total, best
+ * and worst score, which is what the statistics chart shows. Count, sum,
+ * minimum, maximum and sum of squares are enough to get the mean and the
+ * spread of any range of days, because rollups of different days or
+ * difficulties can be combined with {@link #merge(DailyRollup)}.
+ *
+ * @param day          the day the sessions were played, in the zone of the
+ *                     retention job
+ * @param difficulty   the difficulty label of the sessions, or {@code null}
+ * @param count        number of sessions
+ * @param sum          sum of the performance scores
+ * @param min          lowest performance score
+ * @param max          highest performance score
+ * @param sumOfSquares sum of the squared performance scores
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public record DailyRollup(LocalDate day, String difficulty, long count, double sum, double min, double max,
+        double sumOfSquares) {
+
+    /**
+     * Creates the rollup of a single value.
+     *
+     * @param day        the day
+     * @param difficulty the difficulty label, or {@code null}
+     * @param value      the performance score
+     * @return the rollup
+     */
+    public static DailyRollup of(LocalDate day, String difficulty, double value) {
+        return new DailyRollup(day, difficulty, 1, value, value, value, value * value);
+    }
+
+    /**
+     * Returns this rollup with one more value.
+     *
+     * @param value the performance score
+     * @return the new rollup; this one is unchanged
+     */
+    public DailyRollup add(double value) {
+        return merge(of(day, difficulty, value));
+    }
+
+    /**
+     * Combines this rollup with another one, e.g. of another day or
+     * difficulty. The day and difficulty of this rollup are kept.
+     *
+     * @param other the rollup to add
+     * @return the combined rollup; this one is unchanged
+     */
+    public DailyRollup merge(DailyRollup other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return new DailyRollup(day, difficulty, other.count, other.sum, other.min, other.max,
+                    other.sumOfSquares);
+        }
+        return new DailyRollup(day, difficulty, count + other.count, sum + other.sum, Math.min(min, other.min),
+                Math.max(max, other.max), sumOfSquares + other.sumOfSquares);
+    }
+
+    /**
+     * Returns the mean performance score.
+     *
+     * @return the mean, or {@code NaN} if the rollup is empty
+     */
+    public double mean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns the population variance of the performance scores.
+     *
+     * @return the variance, or {@code NaN} if the rollup is empty
+     */
+    public double variance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        return Math.max(0, sumOfSquares / count - mean * mean); // rounding can make it slightly negative
+    }
+}
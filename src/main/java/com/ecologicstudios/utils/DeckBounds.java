@@ -0,0 +1,83 @@
+package com.ecologicstudios.utils;
+
+import java.util.List;
+
+/**
+ * Best and worst achievable CO2 totals for the leading cards of a deck.
+ * <p>
+ * The per-card bounds ({@link Card#getMinCo2()} and {@link Card#getMaxCo2()})
+ * are summed into prefix arrays once, when the deck is dealt. Afterwards the
+ * best or worst total for the first {@code n} cards is a single array lookup,
+ * no matter how many rounds a game has.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class DeckBounds {
+    /**
+     * {@code best[n]} is the sum of the lowest CO2 values of the first n cards.
+     */
+    private final double[] best;
+
+    /**
+     * {@code worst[n]} is the sum of the highest CO2 values of the first n cards.
+     */
+    private final double[] worst;
+
+    /**
+     * Computes the prefix sums for the first {@code length} cards of a deck.
+     *
+     * @param deck   the cards in the order they will be dealt
+     * @param length how many leading cards to cover; clamped to the deck size
+     */
+    public DeckBounds(List<Card> deck, int length) {
+        int n = Math.max(0, Math.min(length, deck.size()));
+        this.best = new double[n + 1];
+        this.worst = new double[n + 1];
+        int i = 0;
+        for (Card c : deck) { // iterate instead of get(i), which is O(n) for linked lists
+            if (i == n) break;
+            best[i + 1] = best[i] + c.getMinCo2();
+            worst[i + 1] = worst[i] + c.getMaxCo2();
+            i++;
+        }
+    }
+
+    /**
+     * Returns the lowest total CO2 a player can reach over the first {@code n}
+     * cards.
+     *
+     * @param n number of leading cards; clamped to the covered range
+     * @return the best achievable total
+     */
+    public double bestTotal(int n) {
+        return best[clamp(n)];
+    }
+
+    /**
+     * Returns the highest total CO2 a player can reach over the first {@code n}
+     * cards.
+     *
+     * @param n number of leading cards; clamped to the covered range
+     * @return the worst achievable total
+     */
+    public double worstTotal(int n) {
+        return worst[clamp(n)];
+    }
+
+    /**
+     * Returns how many leading cards these bounds cover.
+     *
+     * @return the covered length
+     */
+    public int length() {
+        return best.length - 1;
+    }
+
+    /**
+     * Clamps a card count to {@code [0, length()]}.
+     */
+    private int clamp(int n) {
+        return Math.max(0, Math.min(n, best.length - 1));
+    }
+}
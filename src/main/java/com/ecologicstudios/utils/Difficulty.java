@@ -0,0 +1,70 @@
+package com.ecologicstudios.utils;
+
+import java.util.Locale;
+
+/**
+ * The difficulty levels a {@link Card} or game session can have.
+ * <p>
+ * Card files and the settings screen use the human-readable labels
+ * ("Easy", "Medium", "Hard"); {@link #fromLabel(String)} maps those labels to
+ * constants regardless of case or surrounding whitespace so lookups can be
+ * keyed by enum instead of repeated string comparisons.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public enum Difficulty {
+    /** Introductory cards. */
+    EASY("Easy"),
+
+    /** Intermediate cards. */
+    MEDIUM("Medium"),
+
+    /** Advanced cards. */
+    HARD("Hard");
+
+    /**
+     * Label used for this difficulty in card files and the user interface.
+     */
+    private final String label;
+
+    /**
+     * Creates a difficulty constant with its display label.
+     *
+     * @param label the human-readable label
+     */
+    Difficulty(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the human-readable label of this difficulty.
+     *
+     * @return the label, e.g. "Easy"
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Maps a difficulty label to its constant. Matching ignores case and
+     * leading/trailing whitespace.
+     *
+     * @param label the label to look up (e.g. "easy", "Hard")
+     * @return the matching difficulty, or {@code null} if {@code label} is
+     *         {@code null} or unknown
+     */
+    public static Difficulty fromLabel(String label) {
+        if (label == null) return null;
+        switch (label.trim().toLowerCase(Locale.ROOT)) {
+            case "easy":
+                return EASY;
+            case "medium":
+                return MEDIUM;
+            case "hard":
+                return HARD;
+            default:
+                return null;
+        }
+    }
+}
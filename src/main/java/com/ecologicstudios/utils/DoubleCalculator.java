@@ -0,0 +1,124 @@
+package com.ecologicstudios.utils;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.stream.DoubleStream;
+
+/**
+ * The primitive counterpart of {@link Calculator}: a calculator over
+ * {@code double} values, so that neither the inserted values nor the result
+ * are boxed. It does not extend {@link Calculator}, whose methods take and
+ * return {@link Number}s.
+ *
+ * <p>{@link #boxed(DoubleCalculator)} and {@link #of(Calculator)} adapt
+ * between the two interfaces, so code written against
+ * {@link Calculator Calculator&lt;Number&gt;} keeps working with a primitive
+ * calculator and the other way round.</p>
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public interface DoubleCalculator {
+    /**
+     * Inserts a single value into the calculator.
+     *
+     * @param value The value to be added.
+     */
+    void insertValue(double value);
+
+    /**
+     * Inserts an array of values into the calculator.
+     *
+     * @param values The values to be added, in order.
+     */
+    default void insertValues(double[] values) {
+        for (double value : values) {
+            insertValue(value);
+        }
+    }
+
+    /**
+     * Inserts a stream of values into the calculator, consuming the stream.
+     *
+     * @param values The values to be added, in encounter order.
+     */
+    default void insertValues(DoubleStream values) {
+        values.forEachOrdered(this::insertValue);
+    }
+
+    /**
+     * Performs the calculation and returns the result.
+     *
+     * @return An {@link OptionalDouble} containing the result of the
+     *         calculation, or {@link OptionalDouble#empty()} if no calculation
+     *         can be performed.
+     */
+    OptionalDouble calculateAsDouble();
+
+    /**
+     * Clears all stored values in the calculator.
+     */
+    void clear();
+
+    /**
+     * Returns a {@link Calculator Calculator&lt;Number&gt;} view of a primitive
+     * calculator; values and results are converted on the way through.
+     *
+     * @param calculator The calculator to adapt.
+     * @return A view that inserts into and calculates with {@code calculator}.
+     */
+    static Calculator<Number> boxed(DoubleCalculator calculator) {
+        return new Calculator<>() {
+            @Override
+            public void insertValue(Number value) {
+                calculator.insertValue(value.doubleValue());
+            }
+
+            @Override
+            public void insertValues(Collection<? extends Number> list) {
+                for (Number value : list) {
+                    calculator.insertValue(value.doubleValue());
+                }
+            }
+
+            @Override
+            public Optional<Number> calculate() {
+                OptionalDouble result = calculator.calculateAsDouble();
+                return result.isPresent() ? Optional.of(result.getAsDouble()) : Optional.empty();
+            }
+
+            @Override
+            public void clear() {
+                calculator.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns a primitive view of a {@link Calculator Calculator&lt;Number&gt;};
+     * every value is boxed on the way through.
+     *
+     * @param calculator The calculator to adapt.
+     * @return A view that inserts into and calculates with {@code calculator}.
+     */
+    static DoubleCalculator of(Calculator<Number> calculator) {
+        return new DoubleCalculator() {
+            @Override
+            public void insertValue(double value) {
+                calculator.insertValue(value);
+            }
+
+            @Override
+            public OptionalDouble calculateAsDouble() {
+                return calculator.calculate().map(r -> OptionalDouble.of(r.doubleValue()))
+                        .orElse(OptionalDouble.empty());
+            }
+
+            @Override
+            public void clear() {
+                calculator.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.ecologicstudios.utils;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.stream.DoubleStream;
+
+/**
+ * The primitive counterpart of {@link Evaluator}: an evaluator over
+ * {@code double} values, so that neither the inserted values nor the result
+ * are boxed. It does not extend {@link Evaluator}, whose methods take and
+ * return {@link Number}s.
+ *
+ * <p>{@link #boxed(DoubleEvaluator)} and {@link #of(Evaluator)} adapt
+ * between the two interfaces, so code written against
+ * {@link Evaluator Evaluator&lt;Number&gt;} keeps working with a primitive
+ * evaluator and the other way round.</p>
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public interface DoubleEvaluator {
+    /**
+     * Inserts a single value into the evaluator.
+     *
+     * @param value The value to be added.
+     */
+    void insertValue(double value);
+
+    /**
+     * Inserts an array of values into the evaluator.
+     *
+     * @param values The values to be added, in order.
+     */
+    default void insertValues(double[] values) {
+        for (double value : values) {
+            insertValue(value);
+        }
+    }
+
+    /**
+     * Inserts a stream of values into the evaluator, consuming the stream.
+     *
+     * @param values The values to be added, in encounter order.
+     */
+    default void insertValues(DoubleStream values) {
+        values.forEachOrdered(this::insertValue);
+    }
+
+    /**
+     * Performs the evaluation and returns the result.
+     *
+     * @return An {@link OptionalDouble} containing the result of the
+     *         evaluation, or {@link OptionalDouble#empty()} if no evaluation
+     *         can be performed.
+     */
+    OptionalDouble evaluateAsDouble();
+
+    /**
+     * Clears all stored values in the evaluator.
+     */
+    void clear();
+
+    /**
+     * Returns an {@link Evaluator Evaluator&lt;Number&gt;} view of a primitive
+     * evaluator; values and results are converted on the way through.
+     *
+     * @param evaluator The evaluator to adapt.
+     * @return A view that inserts into and evaluates with {@code evaluator}.
+     */
+    static Evaluator<Number> boxed(DoubleEvaluator evaluator) {
+        return new Evaluator<>() {
+            @Override
+            public void insertValue(Number value) {
+                evaluator.insertValue(value.doubleValue());
+            }
+
+            @Override
+            public void insertValues(Collection<? extends Number> list) {
+                for (Number value : list) {
+                    evaluator.insertValue(value.doubleValue());
+                }
+            }
+
+            @Override
+            public Optional<Number> evaluate() {
+                OptionalDouble result = evaluator.evaluateAsDouble();
+                return result.isPresent() ? Optional.of(result.getAsDouble()) : Optional.empty();
+            }
+
+            @Override
+            public void clear() {
+                evaluator.clear();
+            }
+        };
+    }
+
+    /**
+     * Returns a primitive view of an {@link Evaluator Evaluator&lt;Number&gt;};
+     * every value is boxed on the way through.
+     *
+     * @param evaluator The evaluator to adapt.
+     * @return A view that inserts into and evaluates with {@code evaluator}.
+     */
+    static DoubleEvaluator of(Evaluator<Number> evaluator) {
+        return new DoubleEvaluator() {
+            @Override
+            public void insertValue(double value) {
+                evaluator.insertValue(value);
+            }
+
+            @Override
+            public OptionalDouble evaluateAsDouble() {
+                return evaluator.evaluate().map(r -> OptionalDouble.of(r.doubleValue()))
+                        .orElse(OptionalDouble.empty());
+            }
+
+            @Override
+            public void clear() {
+                evaluator.clear();
+            }
+        };
+    }
+}
@@ -14,9 +14,10 @@ import java.util.List;
  */
 public class FeedbackGenerator {
     /**
-     * The list of cards to be evaluated for feedback and CO2 calculations.
+     * Best and worst achievable totals for the leading cards of the deck,
+     * computed once from the per-card CO2 bounds.
      */
-    private List<Card> cards;
+    private final DeckBounds bounds;
 
     /**
      * The number of rounds (cards) to consider in the calculations.
@@ -26,59 +27,37 @@ public class FeedbackGenerator {
     /**
      * Constructs a FeedbackCalculator with the specified list of cards and round
      * length.
+     * <p>
+     * The best and worst totals for the first {@code roundLength} cards are
+     * computed here, so the deck may be modified afterwards (e.g. as cards are
+     * dealt) without affecting the feedback.
      *
      * @param cards       the list of cards to evaluate
      * @param roundLength the number of rounds to consider
      */
     public FeedbackGenerator(List<Card> cards, int roundLength) {
-        this.cards = cards;
+        this.bounds = new DeckBounds(cards, roundLength);
         this.roundLength = roundLength;
     }
 
     /**
-     * Calculates the minimum possible total CO2 result by selecting the lowest CO2
-     * choice for each card.
+     * Returns the minimum possible total CO2 result, i.e. the sum of the lowest
+     * CO2 choice of each card in the round.
      *
-     * @param cards       the list of cards to evaluate
-     * @param roundLength the number of cards to consider (e.g., round length)
      * @return the sum of the minimum CO2 values for each card
      */
     public double getMinResult() {
-        double minTotal = 0;
-        for (int i = 0; i < roundLength && i < cards.size(); i++) {
-            List<Alternative> alternatives = cards.get(i).getAlternatives();
-            double minCo2 = Double.MAX_VALUE;
-            for (Alternative alt : alternatives) {
-                if (alt.getCo2() < minCo2) {
-                    minCo2 = alt.getCo2();
-                }
-            }
-            minTotal += minCo2;
-        }
-        return minTotal;
+        return bounds.bestTotal(roundLength);
     }
 
     /**
-     * Calculates the maximum possible total CO2 result by selecting the highest CO2
-     * choice for each card.
+     * Returns the maximum possible total CO2 result, i.e. the sum of the highest
+     * CO2 choice of each card in the round.
      *
-     * @param cards       the list of cards to evaluate
-     * @param roundLength the number of cards to consider (e.g., round length)
      * @return the sum of the maximum CO2 values for each card
      */
     public double getMaxResult() {
-        double maxTotal = 0;
-        for (int i = 0; i < roundLength && i < cards.size(); i++) {
-            List<Alternative> choices = cards.get(i).getAlternatives();
-            double maxCo2 = Double.MIN_VALUE;
-            for (Alternative choice : choices) {
-                if (choice.getCo2() > maxCo2) {
-                    maxCo2 = choice.getCo2();
-                }
-            }
-            maxTotal += maxCo2;
-        }
-        return maxTotal;
+        return bounds.worstTotal(roundLength);
     }
 
     /**
@@ -0,0 +1,96 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Short exclusive sections shared by all processes that use the same history
+ * or card file.
+ * <p>
+ * A section holds an OS-level lock on a dedicated lock file, which is never
+ * read or written otherwise: on some platforms closing any channel to a file
+ * releases every lock the process holds on it, so the locked data itself must
+ * live in other files. Operating systems grant file locks to whole processes,
+ * not threads, so sections in the same JVM are additionally serialized by one
+ * {@link ReentrantLock} per lock file.
+ * <p>
+ * All methods are static and the class cannot be instantiated.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+final class FileLocks {
+    /**
+     * An action run while holding a lock.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    interface Action<T> {
+        /**
+         * Runs the action.
+         *
+         * @return the result
+         * @throws IOException if the action fails
+         */
+        T run() throws IOException;
+    }
+
+    /** In-process locks by absolute lock file path. */
+    private static final ConcurrentMap<Path, ReentrantLock> LOCAL = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private FileLocks() {}
+
+    /**
+     * Returns the lock file that guards the given history file:
+     * {@code <historyFile>.lock}.
+     *
+     * @param historyFile the history file
+     * @return the lock file
+     */
+    static Path lockFileOf(Path historyFile) {
+        return historyFile.resolveSibling(historyFile.getFileName() + ".lock");
+    }
+
+    /**
+     * Runs {@code action} while holding the exclusive lock on {@code lockFile}.
+     * Blocks until the lock is available. Sections on the same lock file must
+     * not be nested.
+     *
+     * @param lockFile the lock file; created if needed
+     * @param action   the action to run
+     * @param <T>      the result type
+     * @return the action's result
+     * @throws IOException if the lock cannot be acquired or the action fails
+     */
+    static <T> T withLock(Path lockFile, Action<T> action) throws IOException {
+        ReentrantLock local = LOCAL.computeIfAbsent(lockFile.toAbsolutePath().normalize(), k -> new ReentrantLock());
+        local.lock();
+        try {
+            Path dir = lockFile.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = channel.lock();
+                try {
+                    return action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        } finally {
+            local.unlock();
+        }
+    }
+}
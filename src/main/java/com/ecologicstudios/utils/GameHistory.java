@@ -1,85 +1,310 @@
 package com.ecologicstudios.utils;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ecologicstudios.utils.HistoryStore.Change;
 
 /**
  * Manages persistent game session history stored as JSON on disk.
  *
  * <p>
  * This class provides simple CRUD-style operations for reading and
- * writing game sessions. Internally it serializes a {@link GameWrapper}
- * using Jackson's {@link ObjectMapper} to the file provided by
- * {@code filePath}.
+ * writing game sessions. The history is loaded from disk once and then kept
+ * in memory, which is authoritative: reads never touch the disk, and
+ * {@link #addSession(GameSession)} returns as soon as the session is recorded
+ * in memory. Changes are queued and persisted by a single background writer
+ * thread, which writes everything that piled up while it was busy in one
+ * batch and syncs it to disk once (group commit). Writes are crash-safe: the
+ * JSON Lines store only appends, and whole-file rewrites go through a
+ * temporary file and an atomic rename (see {@link AtomicFiles}). Call
+ * {@link #flush()} to wait for pending changes and {@link #close()} before the
+ * application exits.
+ *
+ * <p>
+ * Several processes (e.g. two game windows) may use the same history file.
+ * Ids are reserved in blocks from a shared sequence under a file lock, so they
+ * are unique across processes, and the stores write under the same lock
+ * without losing each other's sessions. Before answering a read, the history
+ * asks its store for changes made by other processes and applies them to
+ * memory; for the JSON Lines store that costs one file status check when
+ * nothing changed.
+ *
+ * <p>
+ * The data on disk is kept by a {@link HistoryStore} chosen from the file
+ * name: a {@code .jsonl} path uses the append-only
+ * {@link JsonLinesHistoryStore}, where a write costs the same at any history
+ * size; any other path uses the original {@link JsonFileHistoryStore}, which
+ * serializes a {@link GameWrapper} and rewrites the whole file on every write.
+ * Any other {@link HistoryStore}, such as the database-backed
+ * {@link JdbcHistoryStore}, can be passed to {@link #GameHistory(HistoryStore)}.
  *
  * <p>
  * All public methods are designed to avoid throwing checked
  * exceptions — I/O problems are logged to stderr and the class will
  * return empty containers or nulls to indicate missing data. Callers
  * should be prepared to handle empty lists or nulls when appropriate.
+ * A batch that cannot be written stays queued and is retried.
  *
  * <p>
  * Example usage:
  * 
  * <pre>
- * GameHistory history = new GameHistory("data/game_history.json");
+ * GameHistory history = new GameHistory("data/history.jsonl", "data/history.json");
  * int id = history.addSession(new GameSession(...));
+ * history.close();
  * </pre>
  *
+ * <p>
+ * Sessions are indexed by id in a sorted map, so getting, removing and adding
+ * a session cost O(log n). Ids are reserved from the store (for the file
+ * stores a {@code .seq} sidecar file, see {@link IdSequence}) by the
+ * background writer, a block at a time and before they are needed, so
+ * {@link #addSession(GameSession)} does not wait for the store; unused ids
+ * are given back on {@link #close()}, and ids are not reused after a restart.
+ * Within one process ids grow with time, so the id order is the order in
+ * which the games were played; with several processes it is only roughly so,
+ * as each takes ids from its own block. {@link #getPage(int, int, String)}
+ * walks that order backwards from a cursor, so showing the latest games costs
+ * O(page size) instead of copying the whole history. A secondary index by
+ * time and difficulty, kept up to date with every change, answers
+ * {@link #findSessions(String, long, long)}.
+ *
+ * <p>
+ * The history keeps every session until it is removed. A
+ * {@link HistoryRetention} bounds it by rolling sessions older than a number
+ * of days up into per-day summaries and removing them.
+ *
  * @see GameWrapper
  * @see GameSession
  * 
  * @author Ecologic Studios
  * @version 1.0
  */
-public class GameHistory {
-    /** Path to the JSON file used to persist game history. */
-    private final String filePath;
+public class GameHistory implements AutoCloseable {
+    /**
+     * One page of sessions returned by {@link #getPage(int, int, String)}.
+     *
+     * @param sessions   the sessions, newest first
+     * @param nextCursor the cursor for the next, older page, or 0 if there
+     *                   are no more matching sessions
+     */
+    public record Page(List<GameSession> sessions, int nextCursor) {
+        /**
+         * Returns whether older matching sessions exist.
+         *
+         * @return {@code true} if {@link #nextCursor()} leads to another page
+         */
+        public boolean hasMore() {
+            return nextCursor > 0;
+        }
+    }
+
+    /** How long the writer waits before retrying a batch that failed. */
+    private static final long RETRY_MILLIS = 1000;
+
+    /** Number of session ids the writer reserves from the store at a time. */
+    private static final int ID_BLOCK = 16;
+
+    /** Backend that persists the sessions. */
+    private final HistoryStore store;
+
+    /** The authoritative history, by id; guarded by {@code this}. */
+    private final NavigableMap<Integer, GameSession> sessions = new TreeMap<>();
+
+    /** Time and difficulty indexes over {@link #sessions}; guarded by {@code this}. */
+    private final HistoryIndex index = new HistoryIndex();
+
+    /** Highest session id known to be taken; guarded by {@code this}. */
+    private int lastId;
+
+    /** Next id of the current block; guarded by {@code this}. */
+    private int nextId = 1;
+
+    /** Last id of the current block, used up once {@link #nextId} passes it; guarded by {@code this}. */
+    private int blockEnd;
+
+    /** First id of the block reserved ahead by the writer; guarded by {@code this}. */
+    private int spareFrom;
+
+    /** Last id of the block reserved ahead, or 0 if there is none; guarded by {@code this}. */
+    private int spareTo;
+
+    /** Whether the writer should reserve the next block; guarded by {@code this}. */
+    private boolean reserveRequested;
+
+    /** Whether the writer is reserving a block; guarded by {@code this}. */
+    private boolean reserving;
+
+    /** Bumped when the history is cleared, so blocks reserved before are dropped; guarded by {@code this}. */
+    private int idEpoch;
+
+    /** Number of clears whose ids the writer has not reset yet; guarded by {@code this}. */
+    private int pendingResets;
+
+    /** The batch being written, or {@code null}; guarded by {@code this}. */
+    private List<Change> inFlight;
+
+    /** Changes not yet handed to the writer; guarded by {@code this}. */
+    private List<Change> pending = new ArrayList<>();
 
-    /** Jackson mapper used for JSON (de)serialization. */
-    private final ObjectMapper mapper;
+    /** Number of changes queued so far; guarded by {@code this}. */
+    private long queuedCount;
+
+    /** Number of changes persisted so far; guarded by {@code this}. */
+    private long writtenCount;
+
+    /** Number of batches the writer has attempted; guarded by {@code this}. */
+    private long attemptCount;
+
+    /** Whether {@link #close()} has been called; guarded by {@code this}. */
+    private boolean closed;
+
+    /** Whether a batch is being written; guarded by {@code this}. */
+    private boolean writing;
+
+    /** Background writer, started on the first change. */
+    private Thread writerThread;
+
+    /** Number of batches written. */
+    private volatile long flushCount;
+
+    /** Number of batches that failed and were retried. */
+    private volatile long failedFlushCount;
+
+    /** Duration of the last successful batch write, in nanoseconds. */
+    private volatile long lastFlushNanos;
 
     /**
      * Create a new GameHistory instance which will read and write
      * history to the supplied file path.
      *
-     * @param filePath path to the JSON file used to persist history. If the
-     *                 file does not exist it will be created by
-     *                 {@link #saveGameData(GameWrapper)}
+     * @param filePath path to the history file. A path ending in
+     *                 {@code .jsonl} is stored in JSON Lines format, anything
+     *                 else as a single JSON document. The file is created if it
+     *                 does not exist
      */
     public GameHistory(String filePath) {
-        this.filePath = filePath;
-        this.mapper = new ObjectMapper();
+        this(filePath, null);
+    }
 
-        // create history file if it does not exist
-        try {
-            File file = new File(filePath);
+    /**
+     * Create a new GameHistory instance over a JSON Lines file, migrating an
+     * existing history in the old single-document format the first time.
+     *
+     * @param filePath   path to the history file; see
+     *                   {@link #GameHistory(String)}
+     * @param legacyPath path to an old-format history whose sessions are copied
+     *                   into {@code filePath} if that file does not exist yet and
+     *                   is in JSON Lines format; may be {@code null}
+     */
+    public GameHistory(String filePath, String legacyPath) {
+        if (filePath.endsWith(".jsonl")) {
+            this.store = new JsonLinesHistoryStore(Path.of(filePath), legacyPath == null ? null : Path.of(legacyPath));
+        } else {
+            this.store = new JsonFileHistoryStore(filePath);
+        }
+        load();
+    }
 
-            if (!file.exists()) {
-                if (file.getParentFile() != null) {
-                    file.getParentFile().mkdirs();
-                }
-                if (file.createNewFile()) {
-                    throw new IOException(String.format("was not able to create file: %s", file.getParent()));
-                }
-            }
+    /**
+     * Create a new GameHistory instance over the given store, e.g. a
+     * {@link JdbcHistoryStore}. The history closes the store when it is
+     * closed.
+     *
+     * @param store the store that persists the sessions and hands out ids
+     */
+    public GameHistory(HistoryStore store) {
+        this.store = store;
+        load();
+    }
+
+    /**
+     * Gets all game sessions from history.
+     *
+     * @return a snapshot of all {@link GameSession}s, oldest first. Never
+     *         null — returns an empty list when no sessions are present.
+     */
+    public synchronized List<GameSession> getAllSessions() {
+        catchUp();
+        return new ArrayList<>(sessions.values());
+    }
 
-        } catch (Exception e) {
-            System.err.println(e.getMessage());
+    /**
+     * Gets one page of game sessions, newest first.
+     * <p>
+     * Pass 0 as cursor for the latest sessions, and the returned
+     * {@link Page#nextCursor()} to continue with older ones. Sessions are
+     * skipped only if they do not match the difficulty filter, so an
+     * unfiltered page costs O(log n + page size).
+     *
+     * @param cursor     0 to start with the newest session, otherwise only
+     *                   sessions with a smaller id are returned
+     * @param pageSize   maximum number of sessions to return (at least 1)
+     * @param difficulty only return sessions with this difficulty
+     *                   (case-insensitive), or {@code null} for all
+     * @return the page; never null
+     */
+    public synchronized Page getPage(int cursor, int pageSize, String difficulty) {
+        catchUp();
+        NavigableMap<Integer, GameSession> older = cursor > 0 ? sessions.headMap(cursor, false) : sessions;
+        String wanted = difficulty == null ? null : difficulty.toLowerCase(Locale.ROOT);
+        int limit = Math.max(pageSize, 1);
+        List<GameSession> page = new ArrayList<>(Math.min(limit, sessions.size()));
+        for (GameSession s : older.descendingMap().values()) {
+            if (wanted != null && (s.getDifficulty() == null
+                    || !s.getDifficulty().toLowerCase(Locale.ROOT).equals(wanted))) {
+                continue;
+            }
+            if (page.size() == limit) {
+                return new Page(page, page.get(page.size() - 1).getSessionId());
+            }
+            page.add(s);
         }
+        return new Page(page, 0);
     }
 
     /**
-     * Gets all game sessions from history.
+     * Finds the sessions played in a time range, optionally only those of one
+     * difficulty, e.g. all sessions on "Hard" in the last seven days.
+     * <p>
+     * The query is answered from a time-sorted index with one posting list
+     * per difficulty (see {@link HistoryIndex}), so it costs
+     * O(log n + matches) and does not look at other sessions.
      *
-     * @return list of all {@link GameSession}s. Never null — returns an empty
-     *         list when no sessions are present or on read error.
+     * @param difficulty only return sessions with this difficulty
+     *                   (case-insensitive), or {@code null} for all
+     * @param fromMillis start of the range, inclusive, in epoch milliseconds
+     * @param toMillis   end of the range, exclusive, in epoch milliseconds
+     * @return the matching sessions, oldest first. Never null
      */
-    public List<GameSession> getAllSessions() {
-        return loadGameData().getGameSessions();
+    public synchronized List<GameSession> findSessions(String difficulty, long fromMillis, long toMillis) {
+        catchUp();
+        return index.query(difficulty, fromMillis, toMillis);
+    }
+
+    /**
+     * Finds the oldest sessions played in a time range, optionally only those
+     * of one difficulty, e.g. the next batch for a {@link HistoryRetention}.
+     * Like {@link #findSessions(String, long, long)}, but it costs
+     * O(log n + limit) however many sessions are in the range.
+     *
+     * @param difficulty only return sessions with this difficulty
+     *                   (case-insensitive), or {@code null} for all
+     * @param fromMillis start of the range, inclusive, in epoch milliseconds
+     * @param toMillis   end of the range, exclusive, in epoch milliseconds
+     * @param limit      the most sessions to return
+     * @return at most {@code limit} matching sessions, oldest first. Never null
+     */
+    public synchronized List<GameSession> findSessions(String difficulty, long fromMillis, long toMillis, int limit) {
+        catchUp();
+        return index.query(difficulty, fromMillis, toMillis, limit);
     }
 
     /**
@@ -89,40 +314,76 @@ public class GameHistory {
      * @return the {@link GameSession} matching {@code sessionId} or {@code null}
      *         if not found
      */
-    public GameSession getSession(int sessionId) {
-        return loadGameData().getGameFromId(sessionId);
+    public synchronized GameSession getSession(int sessionId) {
+        catchUp();
+        return sessions.get(sessionId);
     }
 
     /**
      * Adds a new game session to history.
      *
      * The method assigns a unique session id to the provided session and
-     * persists the updated history to disk.
+     * queues it to be persisted in the background. The id comes from a block
+     * the writer reserved ahead of time; only if the writer has not managed
+     * to reserve one yet (e.g. right after starting, or because the store is
+     * failing) is a block reserved on the calling thread.
      *
      * @param session the session to add; must not be null
      * @return the assigned session id (>= 1)
+     * @throws IllegalStateException if the history is closed, or if no id can
+     *                               be reserved from the store; the session
+     *                               is then not added
      */
-    public int addSession(GameSession session) {
-        GameWrapper gameData = loadGameData();
-        int nextId = getNextId(gameData.getGameSessions());
-        session.setSessionId(nextId);
-        gameData.getGameSessions().add(session);
-        saveGameData(gameData);
-        return nextId;
+    public synchronized int addSession(GameSession session) {
+        checkOpen();
+        if (nextId > blockEnd) {
+            takeIdBlock();
+        }
+        int id = nextId++;
+        lastId = Math.max(lastId, id);
+        if (blockEnd - nextId < ID_BLOCK / 2 && spareTo == 0) {
+            requestIds();
+        }
+        session.setSessionId(id);
+        putSession(session);
+        enqueue(Change.add(session));
+        return id;
     }
 
     /**
      * Removes a game session by ID.
      *
      * @param sessionId the ID of the session to remove
-     * @return {@code true} if a session was removed and data persisted,
-     *         otherwise {@code false}
+     * @return {@code true} if a session was removed, otherwise {@code false}
+     * @throws IllegalStateException if the history is closed
      */
-    public boolean removeSession(int sessionId) {
-        GameWrapper gameData = loadGameData();
-        boolean removed = gameData.getGameSessions().removeIf(s -> s.getSessionId() == sessionId);
-        if (removed) {
-            saveGameData(gameData);
+    public synchronized boolean removeSession(int sessionId) {
+        checkOpen();
+        catchUp();
+        if (removeSessionById(sessionId) == null) {
+            return false;
+        }
+        enqueue(Change.remove(sessionId));
+        return true;
+    }
+
+    /**
+     * Removes several game sessions at once, e.g. those rolled up by a
+     * {@link HistoryRetention}. Ids that are not in the history are ignored.
+     *
+     * @param sessionIds the IDs of the sessions to remove
+     * @return the number of sessions removed
+     * @throws IllegalStateException if the history is closed
+     */
+    public synchronized int removeSessions(Collection<Integer> sessionIds) {
+        checkOpen();
+        catchUp();
+        int removed = 0;
+        for (int sessionId : sessionIds) {
+            if (removeSessionById(sessionId) != null) {
+                enqueue(Change.remove(sessionId));
+                removed++;
+            }
         }
         return removed;
     }
@@ -130,77 +391,518 @@ public class GameHistory {
     /**
      * Clears all game session history.
      * 
-     * Removes all sessions from memory and persists an empty history to disk.
+     * Removes all sessions from memory and persists an empty history to disk,
+     * and restarts the ids at 1 if the store supports it (see
+     * {@link HistoryStore#resetIds()}). The writer resets the ids right after
+     * persisting the clear, so no reservation runs meanwhile; new sessions
+     * wait for it. Other processes sharing the history should be closed
+     * first, as ids they have reserved may be handed out again.
      * This operation cannot be undone.
+     *
+     * @throws IllegalStateException if the history is closed
      */
-    public void clearHistory() {
-        GameWrapper emptyGameData = new GameWrapper();
-        saveGameData(emptyGameData);
+    public synchronized void clearHistory() {
+        checkOpen();
+        clearSessions();
+        lastId = 0;
+        idEpoch++;
+        nextId = 1;
+        blockEnd = 0;
+        spareTo = 0;
+        pendingResets++;
+        enqueue(Change.clear());
+        requestIds();
     }
 
     /**
      * Gets the total number of sessions.
      *
-     * @return number of sessions in history; 0 if none or on read error
+     * @return number of sessions in history; 0 if none
+     */
+    public synchronized int getSessionCount() {
+        catchUp();
+        return sessions.size();
+    }
+
+    /**
+     * Waits until every change made before this call has been persisted, or
+     * until the writer failed to persist it once.
+     *
+     * @return {@code true} if all those changes are on disk
+     */
+    public synchronized boolean flush() {
+        long target = queuedCount;
+        long attempts = attemptCount;
+        boolean interrupted = false;
+        // two attempts: the batch in progress may not include the latest changes
+        while (writtenCount < target && writerThread != null && attemptCount < attempts + 2) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return writtenCount >= target;
+    }
+
+    /**
+     * Flushes pending changes, stops the background writer, gives the unused
+     * reserved ids back and closes the store. The sessions can still be read
+     * afterwards, but changing them throws {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            flush();
+            closed = true;
+            thread = writerThread;
+            notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(5 * RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            writerThread = null;
+            writeNow(); // whatever the writer could not persist gets one last try
+            releaseIdBlocks();
+            store.close();
+        }
+    }
+
+    /**
+     * Returns the number of changes waiting to be persisted.
+     *
+     * @return queue depth
+     */
+    public synchronized long getQueueDepth() {
+        return queuedCount - writtenCount;
+    }
+
+    /**
+     * Returns how long the last successful batch write took.
+     *
+     * @return flush latency in nanoseconds, or 0 if nothing was written yet
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    /**
+     * Returns the number of batches written by the background writer.
+     *
+     * @return flush count
+     */
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    /**
+     * Returns the number of batch writes that failed and were retried.
+     *
+     * @return failed flush count
      */
-    public int getSessionCount() {
-        return getAllSessions().size();
+    public long getFailedFlushCount() {
+        return failedFlushCount;
     }
 
     // ------Private helper methods------
 
     /**
-     * Loads game history from the configured JSON file.
+     * Loads the stored sessions into memory and has the writer reserve the
+     * first block of ids.
+     */
+    private synchronized void load() {
+        for (GameSession s : store.readAll()) {
+            putSession(s);
+        }
+        this.lastId = store.lastId();
+        requestIds();
+    }
+
+    /**
+     * Throws if {@link #close()} was called, as the store is closed then. Must
+     * be called while holding the lock.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("game history is closed");
+        }
+    }
+
+    /**
+     * Queues a change for the writer, starting it if needed. Must be called
+     * while holding the lock.
+     */
+    private void enqueue(Change change) {
+        pending.add(change);
+        queuedCount++;
+        startWriter();
+        notifyAll();
+    }
+
+    /**
+     * Asks the writer to reserve the next block of ids. Must be called while
+     * holding the lock.
+     */
+    private void requestIds() {
+        if (closed) {
+            return;
+        }
+        reserveRequested = true;
+        startWriter();
+        notifyAll();
+    }
+
+    /**
+     * Starts the background writer if it is not running. Must be called while
+     * holding the lock.
+     */
+    private void startWriter() {
+        if (writerThread == null) {
+            writerThread = new Thread(this::runWriter, "history-writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Makes the next block of ids current: the block the writer reserved
+     * ahead, waiting for it if the writer is reserving one right now, so that
+     * ids stay in order; otherwise a block reserved on the calling thread.
+     * After a clear, it first waits for the writer to reset the ids. Must be
+     * called while holding the lock.
      *
-     * If the file does not exist or an I/O error occurs, an empty
-     * {@link GameWrapper}
-     * is returned so callers always receive a non-null container.
+     * @throws IllegalStateException if the store cannot reserve ids, or the
+     *                               clear is still not persisted after a few
+     *                               retries
+     */
+    private void takeIdBlock() {
+        boolean interrupted = false;
+        long deadline = System.currentTimeMillis() + 5 * RETRY_MILLIS;
+        while ((reserving && spareTo == 0) || pendingResets > 0) {
+            long left = deadline - System.currentTimeMillis();
+            if (pendingResets > 0 && left <= 0) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("cannot reserve session ids: the cleared history is not saved yet");
+            }
+            try {
+                wait(pendingResets > 0 ? left : 0);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (spareTo != 0) {
+            nextId = spareFrom;
+            blockEnd = spareTo;
+            spareTo = 0;
+            return;
+        }
+        try {
+            nextId = store.reserveIds(idFloor(), ID_BLOCK);
+            blockEnd = nextId + ID_BLOCK - 1;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("cannot reserve session ids: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the highest id this history knows to be taken or reserved. Must
+     * be called while holding the lock.
+     */
+    private int idFloor() {
+        return Math.max(lastId, Math.max(blockEnd, spareTo));
+    }
+
+    /**
+     * Reserves a block of ids for {@link #addSession(GameSession)} on the
+     * writer thread. The lock is not held while the store reserves them. A
+     * block that is no longer needed, because a block was reserved meanwhile
+     * or the history was cleared, is given back. If the store fails, the
+     * reservation is retried after a pause.
      *
-     * @return the deserialized {@link GameWrapper} read from disk, or an empty
-     *         wrapper if missing/error
+     * @throws InterruptedException if the writer is interrupted while pausing
      */
-    private GameWrapper loadGameData() {
+    private void reserveIdBlock(int floor, int epoch) throws InterruptedException {
+        int first;
         try {
-            File file = new File(filePath);
-            // if file is empty
-            if (file.length() == 0) {
-                return new GameWrapper();
+            first = store.reserveIds(floor, ID_BLOCK);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reserving session ids: " + e.getMessage());
+            synchronized (this) {
+                reserving = false;
+                notifyAll();
+                reserveRequested |= spareTo == 0;
+                if (!closed) {
+                    wait(RETRY_MILLIS);
+                }
+            }
+            return;
+        }
+        int last = first + ID_BLOCK - 1;
+        synchronized (this) {
+            reserving = false;
+            notifyAll();
+            if (epoch == idEpoch && spareTo == 0) {
+                spareFrom = first;
+                spareTo = last;
+                return;
             }
-            return mapper.readValue(file, GameWrapper.class);
-        } catch (IOException e) {
-            System.err.println("Error loading game history: " + e.getMessage());
-            return new GameWrapper();
         }
+        releaseIds(first, last);
     }
 
     /**
-     * Persists the given {@link GameWrapper} to the configured JSON file using
-     * the mapper's pretty-printer.
-     *
-     * Errors are logged to stderr; callers should not expect an exception to be
-     * thrown.
+     * Gives the unused ids of the current and the spare block back to the
+     * store, the higher block first, so that the ids stay dense when the
+     * history is reopened. Must be called while holding the lock.
+     */
+    private void releaseIdBlocks() {
+        if (spareTo > blockEnd) {
+            releaseIds(spareFrom, spareTo);
+            spareTo = 0;
+        }
+        if (nextId <= blockEnd) {
+            releaseIds(nextId, blockEnd);
+            blockEnd = nextId - 1;
+        }
+        if (spareTo != 0) {
+            releaseIds(spareFrom, spareTo);
+            spareTo = 0;
+        }
+    }
+
+    /**
+     * Gives reserved ids back to the store. Failures are logged; the ids are
+     * then simply not used.
+     */
+    private void releaseIds(int from, int to) {
+        try {
+            store.releaseIds(from, to);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error releasing session ids: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writer loop: waits for changes, takes everything queued so far and
+     * writes it as one batch. The lock is not held while the store writes, so
+     * the game can keep recording sessions meanwhile. When no changes are
+     * waiting, it reserves the next block of ids if one was requested.
+     */
+    private void runWriter() {
+        try {
+            while (true) {
+                List<Change> batch;
+                int floor;
+                int epoch;
+                synchronized (this) {
+                    while (pending.isEmpty() && !reserveRequested && !closed) {
+                        wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    if (pending.isEmpty()) {
+                        reserveRequested = false;
+                        reserving = true;
+                        floor = idFloor();
+                        epoch = idEpoch;
+                        batch = null;
+                    } else {
+                        batch = takeBatch();
+                        floor = 0;
+                        epoch = 0;
+                    }
+                }
+                if (batch == null) {
+                    reserveIdBlock(floor, epoch);
+                    continue;
+                }
+                long start = System.nanoTime();
+                boolean ok = persist(batch);
+                synchronized (this) {
+                    complete(batch, ok, System.nanoTime() - start);
+                    if (!ok && !closed) {
+                        wait(RETRY_MILLIS);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop writing; close() persists whatever is left
+        }
+    }
+
+    /**
+     * Writes all pending changes on the calling thread, e.g. after the writer
+     * has stopped. Must be called while holding the lock.
+     */
+    private void writeNow() {
+        while (writing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Change> batch = takeBatch();
+        long start = System.nanoTime();
+        complete(batch, persist(batch), System.nanoTime() - start);
+    }
+
+    /**
+     * Takes all pending changes as the next batch. Must be called while
+     * holding the lock.
+     */
+    private List<Change> takeBatch() {
+        List<Change> batch = pending;
+        pending = new ArrayList<>();
+        inFlight = batch;
+        writing = true;
+        return batch;
+    }
+
+    /**
+     * Records the outcome of a batch and wakes up waiting threads. A failed
+     * batch is put back in front of the changes queued meanwhile. Must be called
+     * while holding the lock.
+     */
+    private void complete(List<Change> batch, boolean ok, long nanos) {
+        writing = false;
+        inFlight = null;
+        attemptCount++;
+        if (ok) {
+            for (Change change : batch) {
+                if (change.kind() == Change.Kind.CLEAR) {
+                    pendingResets--;
+                }
+            }
+            writtenCount += batch.size();
+            flushCount++;
+            lastFlushNanos = nanos;
+        } else {
+            batch.addAll(pending);
+            pending = batch;
+            failedFlushCount++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Hands a batch to the store and, if it clears the history, resets the
+     * ids. Failures are logged; if only the reset fails, ids simply continue.
      *
-     * @param gameData the game data to save
+     * @return {@code true} if the batch was written
      */
-    private void saveGameData(GameWrapper gameData) {
+    private boolean persist(List<Change> batch) {
         try {
-            File file = new File(filePath);
-            mapper.writerWithDefaultPrettyPrinter().writeValue(file, gameData);
-        } catch (IOException e) {
+            store.write(batch);
+        } catch (IOException | RuntimeException e) {
             System.err.println("Error saving game history: " + e.getMessage());
+            return false;
         }
+        if (batch.stream().anyMatch(change -> change.kind() == Change.Kind.CLEAR)) {
+            try {
+                store.resetIds();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error resetting session id sequence: " + e.getMessage());
+            }
+        }
+        return true;
     }
 
     /**
-     * Computes the next session id for the provided list of sessions.
-     *
-     * Finds the current maximum sessionId and returns max + 1. If the list is empty
-     * the method returns 1.
+     * Applies the changes other processes made to the store. If the store
+     * reloaded the whole history, this process's own changes that are not on
+     * disk yet are applied again on top. Must be called while holding the lock.
+     */
+    private void catchUp() {
+        List<Change> changes;
+        try {
+            changes = store.poll();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error reading changes to game history: " + e.getMessage());
+            return;
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        boolean reloaded = false;
+        for (Change change : changes) {
+            reloaded |= change.kind() == Change.Kind.CLEAR;
+            apply(change);
+        }
+        if (reloaded) {
+            if (inFlight != null) {
+                inFlight.forEach(this::apply);
+            }
+            pending.forEach(this::apply);
+        }
+    }
+
+    /**
+     * Applies one change to the in-memory history. Must be called while
+     * holding the lock.
+     */
+    private void apply(Change change) {
+        switch (change.kind()) {
+            case ADD -> {
+                putSession(change.session());
+                lastId = Math.max(lastId, change.sessionId());
+            }
+            case REMOVE -> removeSessionById(change.sessionId());
+            case CLEAR -> clearSessions();
+        }
+    }
+
+    /**
+     * Adds or replaces a session in memory and in the indexes. Must be called
+     * while holding the lock.
+     */
+    private void putSession(GameSession session) {
+        GameSession old = sessions.put(session.getSessionId(), session);
+        if (old != null) {
+            index.remove(old);
+        }
+        index.add(session);
+    }
+
+    /**
+     * Removes a session from memory and from the indexes. Must be called while
+     * holding the lock.
      *
-     * @param sessions the existing sessions to scan
-     * @return the next available session id (max id + 1), at least 1
+     * @return the removed session, or {@code null} if there was none
+     */
+    private GameSession removeSessionById(int sessionId) {
+        GameSession old = sessions.remove(sessionId);
+        if (old != null) {
+            index.remove(old);
+        }
+        return old;
+    }
+
+    /**
+     * Removes all sessions from memory and from the indexes. Must be called
+     * while holding the lock.
      */
-    private int getNextId(List<GameSession> sessions) {
-        return sessions.stream().mapToInt(GameSession::getSessionId).max().orElse(0) + 1;
+    private void clearSessions() {
+        sessions.clear();
+        index.clear();
     }
-}
\ No newline at end of file
+}
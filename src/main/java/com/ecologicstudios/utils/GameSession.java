@@ -1,8 +1,12 @@
 package com.ecologicstudios.utils;
 
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Simple data holder representing a single game session entry.
@@ -10,18 +14,31 @@ import java.time.format.DateTimeFormatter;
  * This class captures metadata such as timestamp, difficulty, total rounds,
  * cumulative score and best round score for persistence and display.
  * </p>
+ * <p>
+ * The time a session was played is kept as milliseconds since the epoch, so
+ * it does not depend on a time zone. {@link #getTimestamp()} formats it in the
+ * system time zone for display and for the old JSON history format.
+ * </p>
+ * <p>
+ * Sessions recorded by this version also carry the answer of every round,
+ * packed by {@link RoundLog#encode()}; see {@link #getRoundLog()}.
+ * </p>
  *
  * @author Ecologic Studios
  * @version 1.0
  */
 public class GameSession {
+    /** Format of {@link #getTimestamp()}. */
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     private int sessionId;
-    private String timestamp;
+    private long epochMillis;
     private String difficulty;
     private int totalRounds;
     private double totalScore;
     private double bestScore;
     private double worstScore;
+    private String rounds;
 
     /**
      * Create an empty {@code GameSession} instance.
@@ -35,7 +52,7 @@ public class GameSession {
 
     /**
      * Constructs a {@code GameSession} with the provided values. The timestamp is
-     * set to the current system time using the system default time zone.
+     * set to the current time.
      *
      * @param difficulty  human-readable difficulty label (e.g. "Easy", "Hard")
      * @param totalRounds number of rounds played in this session
@@ -44,13 +61,51 @@ public class GameSession {
      * @param worstScore  lowest single-round score in the session
      */
     public GameSession(String difficulty, int totalRounds, double totalScore, double bestScore, double worstScore) {
-        this.timestamp = Instant.now().atZone(ZoneId.systemDefault())
-                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        this(0, System.currentTimeMillis(), difficulty, totalRounds, totalScore, bestScore, worstScore, null);
+    }
+
+    /**
+     * Constructs a {@code GameSession} with the provided values and the answers
+     * of every round. The timestamp is set to the current time.
+     *
+     * @param difficulty  human-readable difficulty label (e.g. "Easy", "Hard")
+     * @param totalRounds number of rounds played in this session
+     * @param totalScore  cumulative score across all rounds
+     * @param bestScore   highest single-round score in the session
+     * @param worstScore  lowest single-round score in the session
+     * @param rounds      the answers of the session
+     */
+    public GameSession(String difficulty, int totalRounds, double totalScore, double bestScore, double worstScore,
+            RoundLog rounds) {
+        this(0, System.currentTimeMillis(), difficulty, totalRounds, totalScore, bestScore, worstScore,
+                rounds.encode());
+    }
+
+    /**
+     * Constructs a {@code GameSession} with all values, e.g. when reading a
+     * stored session.
+     *
+     * @param sessionId   identifier of the session
+     * @param epochMillis when the session was played, in milliseconds since the
+     *                    epoch, or 0 if unknown
+     * @param difficulty  human-readable difficulty label (e.g. "Easy", "Hard")
+     * @param totalRounds number of rounds played in this session
+     * @param totalScore  cumulative score across all rounds
+     * @param bestScore   highest single-round score in the session
+     * @param worstScore  lowest single-round score in the session
+     * @param rounds      the answers packed by {@link RoundLog#encode()}, or
+     *                    {@code null} if they were not recorded
+     */
+    public GameSession(int sessionId, long epochMillis, String difficulty, int totalRounds, double totalScore,
+            double bestScore, double worstScore, String rounds) {
+        this.sessionId = sessionId;
+        this.epochMillis = epochMillis;
         this.difficulty = difficulty;
         this.totalRounds = totalRounds;
         this.totalScore = totalScore;
         this.bestScore = bestScore;
         this.worstScore = worstScore;
+        this.rounds = rounds;
     }
 
     /**
@@ -74,12 +129,44 @@ public class GameSession {
 
     /**
      * Returns the timestamp recorded for this session in yyyy-MM-dd HH:mm:ss
-     * format.
+     * format, in the system time zone.
      *
      * @return timestamp string (may be {@code null} if not set)
      */
     public String getTimestamp() {
-        return timestamp;
+        if (epochMillis == 0) {
+            return null;
+        }
+        return Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()).format(TIMESTAMP_FORMAT);
+    }
+
+    /**
+     * Sets the timestamp from yyyy-MM-dd HH:mm:ss format, read as system
+     * time. Used when reading the old JSON history format; a missing or
+     * malformed timestamp leaves the time unknown.
+     *
+     * @param timestamp the formatted timestamp, or {@code null}
+     */
+    public void setTimestamp(String timestamp) {
+        try {
+            this.epochMillis = timestamp == null ? 0
+                    : LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZoneId.systemDefault())
+                            .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            System.err.println("Ignoring malformed session timestamp: " + timestamp);
+            this.epochMillis = 0;
+        }
+    }
+
+    /**
+     * Returns when this session was played. Not part of the old JSON history
+     * format, which stores {@link #getTimestamp()} instead.
+     *
+     * @return milliseconds since the epoch, or 0 if unknown
+     */
+    @JsonIgnore
+    public long getEpochMillis() {
+        return epochMillis;
     }
 
     /**
@@ -126,4 +213,33 @@ public class GameSession {
     public double getWorstScore() {
         return worstScore;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the answers of every round in packed form.
+     *
+     * @return the packed rounds, or {@code null} if this session was recorded
+     *         without them
+     */
+    public String getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Unpacks the answers of every round.
+     *
+     * @return the rounds, or {@code null} if this session was recorded without
+     *         them or they cannot be read
+     */
+    @JsonIgnore
+    public RoundLog getRoundLog() {
+        if (rounds == null) {
+            return null;
+        }
+        try {
+            return RoundLog.decode(rounds);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring unreadable rounds of session " + sessionId + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
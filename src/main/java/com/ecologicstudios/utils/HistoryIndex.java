@@ -0,0 +1,147 @@
+package com.ecologicstudios.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Secondary indexes over the sessions of a {@link GameHistory}.
+ * <p>
+ * All sessions are kept sorted by the time they were played, and every
+ * difficulty has its own posting list, also sorted by time. A query for a
+ * time range binary-searches the start of the range in the posting list of
+ * the requested difficulty (or in the index of all sessions) and then reads
+ * only the sessions inside the range, so it costs O(log n + matches) instead
+ * of a scan over the whole history. Sessions played at the same millisecond
+ * are ordered by id.
+ * <p>
+ * The indexes are updated by {@link #add(GameSession)} and
+ * {@link #remove(GameSession)} as sessions come and go. This class is not
+ * thread-safe; {@link GameHistory} guards it with its own lock.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+class HistoryIndex {
+    /**
+     * Sort key of a session: its time, then its id.
+     *
+     * @param epochMillis when the session was played
+     * @param sessionId   the session id
+     */
+    private record TimeKey(long epochMillis, int sessionId) implements Comparable<TimeKey> {
+        @Override
+        public int compareTo(TimeKey other) {
+            int c = Long.compare(epochMillis, other.epochMillis);
+            return c != 0 ? c : Integer.compare(sessionId, other.sessionId);
+        }
+    }
+
+    /** All sessions by time. */
+    private final NavigableMap<TimeKey, GameSession> byTime = new TreeMap<>();
+
+    /** Posting lists by lower-case difficulty label, each sorted by time. */
+    private final Map<String, NavigableMap<TimeKey, GameSession>> byDifficulty = new HashMap<>();
+
+    /**
+     * Adds a session to the indexes.
+     *
+     * @param session the session; its id and time must not change while it is
+     *                indexed
+     */
+    void add(GameSession session) {
+        TimeKey key = keyOf(session);
+        byTime.put(key, session);
+        byDifficulty.computeIfAbsent(labelOf(session.getDifficulty()), k -> new TreeMap<>()).put(key, session);
+    }
+
+    /**
+     * Removes a session from the indexes.
+     *
+     * @param session the session, as it was added
+     */
+    void remove(GameSession session) {
+        TimeKey key = keyOf(session);
+        byTime.remove(key);
+        String label = labelOf(session.getDifficulty());
+        NavigableMap<TimeKey, GameSession> postings = byDifficulty.get(label);
+        if (postings != null) {
+            postings.remove(key);
+            if (postings.isEmpty()) {
+                byDifficulty.remove(label);
+            }
+        }
+    }
+
+    /**
+     * Removes all sessions.
+     */
+    void clear() {
+        byTime.clear();
+        byDifficulty.clear();
+    }
+
+    /**
+     * Returns the sessions played in {@code [fromMillis, toMillis)}, optionally
+     * only those of one difficulty.
+     *
+     * @param difficulty the difficulty label (case-insensitive), or
+     *                   {@code null} for all
+     * @param fromMillis start of the range, inclusive, in epoch milliseconds
+     * @param toMillis   end of the range, exclusive, in epoch milliseconds
+     * @return the matching sessions, oldest first; empty if none match
+     */
+    List<GameSession> query(String difficulty, long fromMillis, long toMillis) {
+        return query(difficulty, fromMillis, toMillis, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the oldest {@code limit} sessions played in
+     * {@code [fromMillis, toMillis)}, optionally only those of one difficulty.
+     * Only the returned sessions are read, so it costs O(log n + limit).
+     *
+     * @param difficulty the difficulty label (case-insensitive), or
+     *                   {@code null} for all
+     * @param fromMillis start of the range, inclusive, in epoch milliseconds
+     * @param toMillis   end of the range, exclusive, in epoch milliseconds
+     * @param limit      the most sessions to return
+     * @return the matching sessions, oldest first; empty if none match
+     */
+    List<GameSession> query(String difficulty, long fromMillis, long toMillis, int limit) {
+        NavigableMap<TimeKey, GameSession> source = difficulty == null ? byTime
+                : byDifficulty.get(labelOf(difficulty));
+        if (source == null || fromMillis >= toMillis || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<GameSession> sessions = new ArrayList<>();
+        for (GameSession s : source.subMap(new TimeKey(fromMillis, Integer.MIN_VALUE), true,
+                new TimeKey(toMillis, Integer.MIN_VALUE), false).values()) {
+            if (sessions.size() == limit) {
+                break;
+            }
+            sessions.add(s);
+        }
+        return sessions;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Returns the sort key of a session.
+     */
+    private static TimeKey keyOf(GameSession session) {
+        return new TimeKey(session.getEpochMillis(), session.getSessionId());
+    }
+
+    /**
+     * Normalizes a difficulty label for the posting lists; a missing label
+     * gets its own list.
+     */
+    private static String labelOf(String difficulty) {
+        return difficulty == null ? "" : difficulty.trim().toLowerCase(Locale.ROOT);
+    }
+}
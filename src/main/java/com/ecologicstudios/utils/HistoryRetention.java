@@ -0,0 +1,436 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Retention policy for a {@link GameHistory}: sessions are kept as they are
+ * for a number of days, and older sessions are folded into one
+ * {@link DailyRollup} per day and difficulty and then removed from the
+ * history. This keeps the history, and with it every read and the
+ * statistics chart, at the size of the retention period, while long-term
+ * trends can still be read from {@link #getRollups(String, LocalDate, LocalDate)}.
+ * <p>
+ * Compaction works on whole days: a pass rolls up the sessions played before
+ * the start of the day {@code keepRaw} ago, in the zone of the clock. It
+ * finds them through the history's time index, so a pass only touches the
+ * sessions that expired since the previous one, and reads at most
+ * {@link #MAX_SESSIONS_PER_PASS} of them; a backlog is worked off by the
+ * following passes. {@link #start(Duration)} runs the passes on a background
+ * daemon thread.
+ * <p>
+ * The rollups are kept in a sidecar file (e.g. {@code history.jsonl.rollups})
+ * together with the time before which all sessions are rolled up. The file is
+ * replaced atomically (see {@link AtomicFiles}) before the sessions are
+ * removed from the history, and sessions older than that time are removed
+ * without being counted again, so a pass interrupted between the two steps is
+ * finished by the next one without counting any session twice. Passes run
+ * under a lock on the sidecar file (see {@link FileLocks}), so several
+ * processes sharing a history do not fold the same sessions twice. If the
+ * file exists but cannot be read, no pass runs until it is repaired or
+ * {@link #clearRollups()} is called, so the rollups in it are not lost.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class HistoryRetention implements AutoCloseable {
+    /** Most sessions rolled up by one pass. */
+    static final int MAX_SESSIONS_PER_PASS = 10_000;
+
+    /** Version of the sidecar file format. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The history whose old sessions are rolled up. */
+    private final GameHistory history;
+
+    /** The sidecar file with the rollups. */
+    private final Path file;
+
+    /** The lock file guarding {@link #file}. */
+    private final Path lockFile;
+
+    /** How long sessions are kept as they are. */
+    private final Duration keepRaw;
+
+    /** Source of the current time and of the zone that defines days. */
+    private final Clock clock;
+
+    /** JSON parser for the sidecar file. */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** The rollups by day and lower-case difficulty label; guarded by {@code this}. */
+    private final NavigableMap<LocalDate, Map<String, DailyRollup>> rollups = new TreeMap<>();
+
+    /** All sessions played before this time are rolled up; guarded by {@code this}. */
+    private long rolledUpBefore = Long.MIN_VALUE;
+
+    /** Size and modification time of the sidecar file last read or written; guarded by {@code this}. */
+    private String loadedVersion;
+
+    /** Whether the sidecar file exists but could not be read, so it must not be replaced; guarded by {@code this}. */
+    private boolean unreadable;
+
+    /** Whether the last pass left expired sessions for the next one; guarded by {@code this}. */
+    private boolean backlog;
+
+    /** Whether {@link #close()} has been called; guarded by {@code this}. */
+    private boolean closed;
+
+    /** Background thread running the passes; {@code null} when not started. */
+    private Thread compactorThread;
+
+    /**
+     * Creates a retention policy that keeps sessions for {@code keepRaw} and
+     * stores the rollups in {@code rollupFile}. Existing rollups are loaded;
+     * no pass runs until {@link #compact()} or {@link #start(Duration)} is
+     * called.
+     *
+     * @param history    the history to compact
+     * @param rollupFile the sidecar file with the rollups; created on the
+     *                   first pass that rolls up sessions
+     * @param keepRaw    how long sessions are kept as they are
+     */
+    public HistoryRetention(GameHistory history, Path rollupFile, Duration keepRaw) {
+        this(history, rollupFile, keepRaw, Clock.systemDefaultZone());
+    }
+
+    /**
+     * Creates a retention policy with the given clock, e.g. a fixed clock in
+     * tests.
+     *
+     * @param history    the history to compact
+     * @param rollupFile the sidecar file with the rollups
+     * @param keepRaw    how long sessions are kept as they are
+     * @param clock      the current time; its zone defines the days
+     */
+    public HistoryRetention(GameHistory history, Path rollupFile, Duration keepRaw, Clock clock) {
+        this.history = history;
+        this.file = rollupFile;
+        this.lockFile = FileLocks.lockFileOf(rollupFile);
+        this.keepRaw = keepRaw;
+        this.clock = clock;
+        synchronized (this) {
+            load();
+        }
+    }
+
+    /**
+     * Runs one compaction pass: rolls up the sessions played before the
+     * retention cutoff, oldest first and at most
+     * {@link #MAX_SESSIONS_PER_PASS}, saves the rollups and removes the
+     * sessions from the history. Problems, including a sidecar file that
+     * cannot be read, are logged to stderr; the sessions then stay in the
+     * history and are rolled up by a later pass.
+     *
+     * @return the number of sessions removed from the history
+     */
+    public synchronized int compact() {
+        long cutoff = cutoffMillis();
+        try {
+            return FileLocks.withLock(lockFile, () -> {
+                if (!Objects.equals(loadedVersion, versionOf(file))) {
+                    load(); // another process compacted meanwhile
+                }
+                if (unreadable) {
+                    throw new IOException("cannot read " + file + ", not replacing it");
+                }
+                List<GameSession> expired = history.findSessions(null, Long.MIN_VALUE, cutoff,
+                        MAX_SESSIONS_PER_PASS + 1);
+                backlog = expired.size() > MAX_SESSIONS_PER_PASS;
+                if (expired.isEmpty()) {
+                    return 0;
+                }
+                List<GameSession> batch = backlog ? batchOf(expired) : expired;
+                for (GameSession s : batch) {
+                    if (s.getEpochMillis() >= rolledUpBefore) { // older ones were counted by an interrupted pass
+                        fold(s);
+                    }
+                }
+                long before = backlog ? batch.get(batch.size() - 1).getEpochMillis() + 1 : cutoff;
+                rolledUpBefore = Math.max(rolledUpBefore, before);
+                save();
+                List<Integer> ids = new ArrayList<>(batch.size());
+                for (GameSession s : batch) {
+                    ids.add(s.getSessionId());
+                }
+                history.removeSessions(ids);
+                return batch.size();
+            });
+        } catch (IOException e) {
+            System.err.println("Error compacting game history: " + e.getMessage());
+            load(); // forget what was folded but not saved
+            backlog = false;
+            return 0;
+        }
+    }
+
+    /**
+     * Starts running compaction passes on a background daemon thread: one
+     * right away and then one every {@code period}, or immediately again
+     * while a backlog remains. Does nothing if already started.
+     *
+     * @param period the time between passes
+     */
+    public synchronized void start(Duration period) {
+        if (compactorThread != null || closed) {
+            return;
+        }
+        long periodMillis = Math.max(period.toMillis(), 1);
+        compactorThread = new Thread(() -> runCompactor(periodMillis), "history-compactor");
+        compactorThread.setDaemon(true);
+        compactorThread.start();
+    }
+
+    /**
+     * Returns the rollups of a range of days, optionally only those of one
+     * difficulty.
+     *
+     * @param difficulty only return rollups of this difficulty
+     *                   (case-insensitive), or {@code null} for all
+     * @param from       first day of the range, inclusive
+     * @param to         end of the range, exclusive
+     * @return the rollups, oldest day first. Never null
+     */
+    public synchronized List<DailyRollup> getRollups(String difficulty, LocalDate from, LocalDate to) {
+        List<DailyRollup> result = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return result;
+        }
+        String wanted = difficulty == null ? null : labelOf(difficulty);
+        for (Map<String, DailyRollup> day : rollups.subMap(from, true, to, false).values()) {
+            for (Map.Entry<String, DailyRollup> entry : day.entrySet()) {
+                if (wanted == null || wanted.equals(entry.getKey())) {
+                    result.add(entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns all rollups.
+     *
+     * @return the rollups, oldest day first. Never null
+     */
+    public List<DailyRollup> getRollups() {
+        return getRollups(null, LocalDate.MIN, LocalDate.MAX);
+    }
+
+    /**
+     * Forgets all rollups, e.g. when the player resets the history. Problems
+     * are logged to stderr.
+     */
+    public synchronized void clearRollups() {
+        try {
+            FileLocks.withLock(lockFile, () -> {
+                rollups.clear();
+                rolledUpBefore = Long.MIN_VALUE;
+                unreadable = false;
+                Files.deleteIfExists(file);
+                loadedVersion = null;
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Error clearing history rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the background thread; a pass in progress is finished first.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = compactorThread;
+            compactorThread = null;
+            notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Compactor loop: runs a pass, then waits for the period unless the pass
+     * left a backlog.
+     */
+    private void runCompactor(long periodMillis) {
+        try {
+            while (true) {
+                compact();
+                synchronized (this) {
+                    if (!backlog) {
+                        long until = System.currentTimeMillis() + periodMillis;
+                        long left;
+                        while (!closed && (left = until - System.currentTimeMillis()) > 0) {
+                            wait(left);
+                        }
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop compacting
+        }
+    }
+
+    /**
+     * Returns the start of the first day whose sessions are kept, in epoch
+     * milliseconds.
+     */
+    private long cutoffMillis() {
+        ZoneId zone = clock.getZone();
+        LocalDate firstKept = clock.instant().minus(keepRaw).atZone(zone).toLocalDate();
+        return firstKept.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Returns the sessions a pass takes when more than
+     * {@link #MAX_SESSIONS_PER_PASS} have expired: the oldest ones, without
+     * those played at the millisecond of the first session left over, so that
+     * the sessions of one millisecond are not split between passes. If that
+     * leaves nothing, the pass takes all sessions of that millisecond.
+     *
+     * @param expired the oldest {@code MAX_SESSIONS_PER_PASS + 1} expired
+     *                sessions
+     */
+    private List<GameSession> batchOf(List<GameSession> expired) {
+        long next = expired.get(MAX_SESSIONS_PER_PASS).getEpochMillis();
+        int end = MAX_SESSIONS_PER_PASS;
+        while (end > 0 && expired.get(end - 1).getEpochMillis() == next) {
+            end--;
+        }
+        return end > 0 ? expired.subList(0, end) : history.findSessions(null, next, next + 1);
+    }
+
+    /**
+     * Adds a session to the rollup of its day and difficulty. Sessions whose
+     * score cannot be rescaled are logged and skipped.
+     */
+    private void fold(GameSession s) {
+        double score;
+        try {
+            score = ScoreRescaler.evaluate(s.getTotalScore(), s.getBestScore(), s.getWorstScore());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Not rolling up session " + s.getSessionId() + ": " + e.getMessage());
+            return;
+        }
+        LocalDate day = Instant.ofEpochMilli(s.getEpochMillis()).atZone(clock.getZone()).toLocalDate();
+        rollups.computeIfAbsent(day, d -> new TreeMap<>())
+                .merge(labelOf(s.getDifficulty()), DailyRollup.of(day, s.getDifficulty(), score), DailyRollup::merge);
+    }
+
+    /**
+     * Replaces the rollups in memory with those in the sidecar file. A missing
+     * or unreadable file means no rollups; an unreadable one is logged and
+     * marked {@link #unreadable}.
+     */
+    private void load() {
+        rollups.clear();
+        rolledUpBefore = Long.MIN_VALUE;
+        unreadable = false;
+        loadedVersion = versionOf(file);
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            JsonNode root = mapper.readTree(file.toFile());
+            if (root.path("version").asInt() != FORMAT_VERSION) {
+                throw new IOException("unsupported rollup format " + root.path("version"));
+            }
+            rolledUpBefore = root.path("rolledUpBefore").asLong(Long.MIN_VALUE);
+            for (JsonNode row : root.path("rollups")) {
+                LocalDate day = LocalDate.parse(row.get(0).asText());
+                String difficulty = row.get(1).isNull() ? null : row.get(1).asText();
+                rollups.computeIfAbsent(day, d -> new TreeMap<>()).put(labelOf(difficulty),
+                        new DailyRollup(day, difficulty, row.get(2).asLong(), row.get(3).asDouble(),
+                                row.get(4).asDouble(), row.get(5).asDouble(), row.get(6).asDouble()));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable history rollups " + file + ": " + e.getMessage());
+            rollups.clear();
+            rolledUpBefore = Long.MIN_VALUE;
+            unreadable = true;
+        }
+    }
+
+    /**
+     * Atomically writes all rollups to the sidecar file, one array per day and
+     * difficulty.
+     */
+    private void save() throws IOException {
+        AtomicFiles.replace(file, out -> {
+            try (JsonGenerator json = new JsonFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeNumberField("version", FORMAT_VERSION);
+                json.writeNumberField("rolledUpBefore", rolledUpBefore);
+                json.writeArrayFieldStart("rollups");
+                for (Map<String, DailyRollup> day : rollups.values()) {
+                    for (DailyRollup r : day.values()) {
+                        json.writeStartArray();
+                        json.writeString(r.day().toString());
+                        json.writeString(r.difficulty());
+                        json.writeNumber(r.count());
+                        json.writeNumber(r.sum());
+                        json.writeNumber(r.min());
+                        json.writeNumber(r.max());
+                        json.writeNumber(r.sumOfSquares());
+                        json.writeEndArray();
+                    }
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        });
+        loadedVersion = versionOf(file);
+    }
+
+    /**
+     * Returns the size and modification time of a file, or {@code null} if it
+     * does not exist or cannot be read.
+     */
+    private static String versionOf(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Normalizes a difficulty label, like {@link HistoryIndex} does.
+     */
+    private static String labelOf(String difficulty) {
+        return difficulty == null ? "" : difficulty.trim().toLowerCase(Locale.ROOT);
+    }
+}
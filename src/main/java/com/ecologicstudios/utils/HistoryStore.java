@@ -0,0 +1,166 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage backend for {@link GameHistory}.
+ * <p>
+ * {@link GameHistory} keeps the authoritative history in memory; a store
+ * loads the persisted sessions once, reserves blocks of session ids, and then
+ * applies batches of {@link Change}s written by the history's background
+ * writer. Applying a whole batch at once lets a store coalesce a burst of
+ * changes into a single write. A store whose data other processes may change
+ * reports their changes through {@link #poll()}.
+ *
+ * @see JsonFileHistoryStore
+ * @see JsonLinesHistoryStore
+ * @see JdbcHistoryStore
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public interface HistoryStore extends AutoCloseable {
+    /**
+     * A single change to the history.
+     *
+     * @param kind      what changed
+     * @param session   the added session, for {@link Kind#ADD}
+     * @param sessionId the removed session id, for {@link Kind#REMOVE}
+     */
+    record Change(Kind kind, GameSession session, int sessionId) {
+        /** Kinds of changes. */
+        public enum Kind { ADD, REMOVE, CLEAR }
+
+        /**
+         * Returns a change adding the given session, whose id is already set.
+         *
+         * @param session the session
+         * @return the change
+         */
+        public static Change add(GameSession session) {
+            return new Change(Kind.ADD, session, session.getSessionId());
+        }
+
+        /**
+         * Returns a change removing the session with the given id.
+         *
+         * @param sessionId the session id
+         * @return the change
+         */
+        public static Change remove(int sessionId) {
+            return new Change(Kind.REMOVE, null, sessionId);
+        }
+
+        /**
+         * Returns a change removing all sessions.
+         *
+         * @return the change
+         */
+        public static Change clear() {
+            return new Change(Kind.CLEAR, null, 0);
+        }
+    }
+
+    /**
+     * Reads all stored sessions. Problems are logged to stderr and an empty or
+     * partial list is returned.
+     *
+     * @return the sessions in the order they were added (never null)
+     */
+    List<GameSession> readAll();
+
+    /**
+     * Returns the highest session id ever stored, including removed sessions if
+     * the store remembers them, so that ids are not handed out twice.
+     * <p>
+     * The default implementation returns the highest id in {@link #readAll()}.
+     *
+     * @return the highest id, or 0 for an empty history
+     */
+    default int lastId() {
+        return readAll().stream().mapToInt(GameSession::getSessionId).max().orElse(0);
+    }
+
+    /**
+     * Reserves {@code count} consecutive ids for new sessions, all more than
+     * {@code floor} and more than any id reserved before, also by other
+     * processes sharing the store. {@link GameHistory} calls this from its
+     * background writer, a block at a time, so a store may take a lock or
+     * talk to a server here.
+     * <p>
+     * The default implementation returns {@code floor + 1}, which is enough
+     * for a store used by one process only.
+     *
+     * @param floor the highest id the caller knows to be taken
+     * @param count the number of ids to reserve (at least 1)
+     * @return the first reserved id
+     * @throws IOException if the ids cannot be reserved
+     */
+    default int reserveIds(int floor, int count) throws IOException {
+        return floor + 1;
+    }
+
+    /**
+     * Gives back the unused ids {@code from..to} at the end of a reserved
+     * block, e.g. when the history is closed, so that the ids stay dense. The
+     * ids are only given back if no ids were reserved after them.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param from the first unused id
+     * @param to   the last reserved id
+     * @throws IOException if the ids cannot be given back
+     */
+    default void releaseIds(int from, int to) throws IOException {
+    }
+
+    /**
+     * Restarts id allocation at 1, after the history was cleared. The writer
+     * of {@link GameHistory} calls it once the clear is written, so it never
+     * runs alongside a batch or a reservation of the same history. Ids that
+     * other processes sharing the store have reserved but not used yet may
+     * then be reserved again, so they should be closed before the history is
+     * cleared.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @throws IOException if the ids cannot be reset
+     */
+    default void resetIds() throws IOException {
+    }
+
+    /**
+     * Persists a batch of changes, in order.
+     *
+     * @param changes the changes to apply
+     * @throws IOException if the changes could not be written; the store may
+     *                     have applied a prefix of the batch
+     */
+    void write(List<Change> changes) throws IOException;
+
+    /**
+     * Returns the changes other processes made since this store last read,
+     * wrote or polled its data. A {@link Change.Kind#CLEAR} followed by adds
+     * means the whole history was reloaded.
+     * <p>
+     * The default implementation returns no changes, for stores that are not
+     * shared between processes.
+     *
+     * @return the changes, in order (never null)
+     * @throws IOException if the data cannot be read
+     */
+    default List<Change> poll() throws IOException {
+        return List.of();
+    }
+
+    /**
+     * Releases the resources of the store, e.g. database connections. Called
+     * by {@link GameHistory#close()} after the last write.
+     * <p>
+     * The default implementation does nothing.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,130 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A persistent id sequence kept in a small sidecar file next to the history.
+ * <p>
+ * The file holds the last id reserved as decimal text. It lets
+ * {@link GameHistory} continue numbering after a restart without looking at
+ * the sessions, and without reusing the id of a session that was removed,
+ * whatever the {@link HistoryStore} remembers about removed sessions.
+ * <p>
+ * Several processes may share one history. Ids are therefore reserved from
+ * the file in blocks under the history's lock (see {@link FileLocks}), so
+ * concurrent processes never hand out the same id, and the lock is taken
+ * once per block rather than once per session. The file is replaced
+ * atomically and synced (see {@link AtomicFiles}), so a crash leaves either
+ * the old or the new number, never a torn one. Every caller also passes the
+ * highest id it knows as a floor, so ids of stored sessions are not handed
+ * out again even if the file is lost.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+class IdSequence {
+    /** The sidecar file. */
+    private final Path file;
+
+    /** The lock file shared with the history's store. */
+    private final Path lockFile;
+
+    /**
+     * Creates a sequence stored in {@code <historyFile>.seq}.
+     *
+     * @param historyFile the history file the sequence belongs to
+     */
+    IdSequence(Path historyFile) {
+        this.file = historyFile.resolveSibling(historyFile.getFileName() + ".seq");
+        this.lockFile = FileLocks.lockFileOf(historyFile);
+    }
+
+    /**
+     * Reads the last id reserved, without taking the lock.
+     *
+     * @return the stored id, or 0 if the file is missing or unreadable
+     */
+    int read() {
+        try {
+            return readUnlocked();
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable id sequence " + file + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Reserves {@code count} ids following both the stored id and
+     * {@code floor}, and stores the last of them.
+     *
+     * @param floor the highest id the caller knows to be taken
+     * @param count the number of ids to reserve
+     * @return the first reserved id
+     * @throws IOException if the sequence cannot be locked or written
+     */
+    int reserve(int floor, int count) throws IOException {
+        return FileLocks.withLock(lockFile, () -> {
+            int first = Math.max(readUnlocked(), floor) + 1;
+            write(first + count - 1);
+            return first;
+        });
+    }
+
+    /**
+     * Gives back the unused ids {@code from..to} if {@code to} is still the
+     * stored id, i.e. no other process reserved ids after them.
+     *
+     * @param from the first unused id
+     * @param to   the last reserved id
+     * @throws IOException if the sequence cannot be locked or written
+     */
+    void release(int from, int to) throws IOException {
+        FileLocks.withLock(lockFile, () -> {
+            if (readUnlocked() == to) {
+                write(from - 1);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Restarts the sequence, e.g. after the history was cleared.
+     *
+     * @throws IOException if the sequence cannot be locked or written
+     */
+    void reset() throws IOException {
+        FileLocks.withLock(lockFile, () -> {
+            write(0);
+            return null;
+        });
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Atomically replaces the stored id. Must be called while holding the lock.
+     */
+    private void write(int id) throws IOException {
+        byte[] bytes = Integer.toString(id).getBytes(StandardCharsets.UTF_8);
+        AtomicFiles.replace(file, out -> out.write(bytes));
+    }
+
+    /**
+     * Reads the stored id; a missing, empty or unreadable file counts as 0.
+     */
+    private int readUnlocked() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        String text = Files.readString(file, StandardCharsets.UTF_8).trim();
+        try {
+            return text.isEmpty() ? 0 : Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring unreadable id sequence " + file + ": " + text);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link CardFetcher} that indexes cards when they are loaded.
+ * <p>
+ * Cards are bucketed by {@link Difficulty} and by id once, at load time, so
+ * {@link #getCardsByDifficulty(String)} and {@link #getCardById(int)} are
+ * constant-time lookups instead of a scan over the whole deck. The lists handed
+ * out are read-only views of the internal buckets; callers that need to shuffle
+ * or remove cards must copy them first.
+ * <p>
+ * Cards whose difficulty label is not a known {@link Difficulty} are still
+ * available through {@link #getAllCards()} and {@link #getCardById(int)}, but do
+ * not appear in any difficulty bucket. If several cards share an id, the first one
+ * loaded is returned by {@link #getCardById(int)}, as for every
+ * {@link CardFetcher}.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class IndexedCardFetcher implements CardFetcher {
+    /**
+     * All loaded cards in file order (read-only).
+     */
+    private List<Card> allCards = List.of();
+
+    /**
+     * Read-only card lists per difficulty.
+     */
+    private Map<Difficulty, List<Card>> byDifficulty = new EnumMap<>(Difficulty.class);
+
+    /**
+     * Cards by id.
+     */
+    private Map<Integer, Card> byId = new HashMap<>();
+
+    /**
+     * Constructs a new IndexedCardFetcher and loads cards from the specified
+     * path.
+     *
+     * @param path file system path or classpath resource name of the card file
+     */
+    public IndexedCardFetcher(String path) {
+        load(path);
+    }
+
+    /**
+     * Constructs a new IndexedCardFetcher over cards that are already in memory.
+     *
+     * @param cards the cards to index; must not be null
+     */
+    public IndexedCardFetcher(List<Card> cards) {
+        index(cards);
+    }
+
+    /**
+     * Loads cards from the specified file and rebuilds the indexes.
+     * <p>
+     * If the file cannot be read an error is logged to stderr and the fetcher is
+     * left empty.
+     *
+     * @param path file system path or classpath resource name of the card file
+     */
+    @Override
+    public void loadCards(String path) {
+        load(path);
+    }
+
+    /**
+     * Returns the cards of the given difficulty.
+     *
+     * @param difficulty the difficulty label (case-insensitive)
+     * @return a read-only list of matching cards in file order; empty if the
+     *         label is unknown
+     */
+    @Override
+    public List<Card> getCardsByDifficulty(String difficulty) {
+        Difficulty key = Difficulty.fromLabel(difficulty);
+        return key == null ? List.of() : byDifficulty.get(key);
+    }
+
+    /**
+     * Returns the cards of the given difficulty.
+     *
+     * @param difficulty the difficulty; must not be null
+     * @return a read-only list of matching cards in file order
+     */
+    public List<Card> getCardsByDifficulty(Difficulty difficulty) {
+        return byDifficulty.get(difficulty);
+    }
+
+    /**
+     * Returns the card with the given id in constant time.
+     *
+     * @param id the card id
+     * @return the first card with the given id, or {@code null} if there is none
+     */
+    @Override
+    public Card getCardById(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns all loaded cards.
+     *
+     * @return a read-only list of all cards in file order
+     */
+    @Override
+    public List<Card> getAllCards() {
+        return allCards;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Reads and indexes the cards of a file; also used by the constructor,
+     * which must not call the overridable {@link #loadCards(String)}.
+     */
+    private void load(String path) {
+        try {
+            index(CardJsonStream.read(path));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading cards: " + e.getMessage());
+            index(List.of());
+        }
+    }
+
+    /**
+     * Replaces the indexes with ones built from {@code cards}. New maps are
+     * built first and then assigned, so readers never observe half-built
+     * buckets.
+     */
+    private void index(List<Card> cards) {
+        Map<Difficulty, List<Card>> buckets = new EnumMap<>(Difficulty.class);
+        for (Difficulty d : Difficulty.values()) {
+            buckets.put(d, new ArrayList<>());
+        }
+        Map<Integer, Card> ids = new HashMap<>(cards.size() * 4 / 3 + 1);
+
+        for (Card c : cards) {
+            Difficulty d = Difficulty.fromLabel(c.getDifficulty());
+            if (d != null) {
+                buckets.get(d).add(c);
+            }
+            ids.putIfAbsent(c.getId(), c);
+        }
+        for (Map.Entry<Difficulty, List<Card>> e : buckets.entrySet()) {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+
+        this.byDifficulty = buckets;
+        this.byId = ids;
+        this.allCards = Collections.unmodifiableList(new ArrayList<>(cards));
+    }
+}
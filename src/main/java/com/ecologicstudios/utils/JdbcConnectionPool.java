@@ -0,0 +1,194 @@
+package com.ecologicstudios.utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small fixed-size pool of JDBC connections for {@link JdbcHistoryStore}.
+ * <p>
+ * Connections are opened on demand, up to the pool size, and kept open for
+ * reuse. A connection is checked with {@link Connection#isValid(int)} before it
+ * is handed out again, and a connection whose action failed is closed instead
+ * of being returned, so a dropped database connection is replaced on the next
+ * use. {@link #close()} closes the idle connections; the pool can still be used
+ * afterwards and then opens new ones.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+final class JdbcConnectionPool implements AutoCloseable {
+    /**
+     * An action run with a pooled connection.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    interface SqlAction<T> {
+        /**
+         * Runs the action.
+         *
+         * @param connection the connection to use; do not close it
+         * @return the result
+         * @throws SQLException if the action fails
+         */
+        T run(Connection connection) throws SQLException;
+    }
+
+    /** How long to wait for a free connection before failing. */
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    /** How long a validity check may take, in seconds. */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /** JDBC URL of the database. */
+    private final String url;
+
+    /** Database user, or {@code null} if the URL carries the credentials. */
+    private final String user;
+
+    /** Database password, or {@code null}. */
+    private final String password;
+
+    /** One permit per connection that may be in use. */
+    private final Semaphore permits;
+
+    /** Open connections not in use, most recently used first. */
+    private final BlockingDeque<Connection> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * Creates a pool; no connection is opened yet.
+     *
+     * @param url      the JDBC URL
+     * @param user     the database user, or {@code null}
+     * @param password the database password, or {@code null}
+     * @param size     the maximum number of connections (at least 1)
+     */
+    JdbcConnectionPool(String url, String user, String password, int size) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.permits = new Semaphore(Math.max(size, 1), true);
+    }
+
+    /**
+     * Runs {@code action} with a connection from the pool. Waits if all
+     * connections are in use.
+     *
+     * @param action the action to run
+     * @param <T>    the result type
+     * @return the action's result
+     * @throws SQLException if no connection can be obtained or the action fails
+     */
+    <T> T withConnection(SqlAction<T> action) throws SQLException {
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a database connection", e);
+        }
+        Connection connection = null;
+        boolean broken = true;
+        try {
+            connection = borrow();
+            T result = action.run(connection);
+            broken = false;
+            return result;
+        } finally {
+            if (connection != null) {
+                release(connection, broken);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Runs {@code action} in one transaction on a connection from the pool:
+     * commits if it succeeds and rolls back if it fails.
+     *
+     * @param action the action to run
+     * @param <T>    the result type
+     * @return the action's result
+     * @throws SQLException if no connection can be obtained or the action or
+     *                      the commit fails
+     */
+    <T> T inTransaction(SqlAction<T> action) throws SQLException {
+        return withConnection(connection -> {
+            connection.setAutoCommit(false);
+            try {
+                T result = action.run(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Closes all idle connections.
+     */
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Takes a valid idle connection or opens a new one. The caller holds a
+     * permit.
+     */
+    private Connection borrow() throws SQLException {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+        return user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+    }
+
+    /**
+     * Returns a connection to the pool, or closes it if its action failed.
+     */
+    private void release(Connection connection, boolean broken) {
+        if (broken) {
+            closeQuietly(connection);
+        } else {
+            idle.offerFirst(connection);
+        }
+    }
+
+    /**
+     * Closes a connection, rolling back anything uncommitted; errors are
+     * ignored because the connection is discarded anyway.
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            connection.close();
+        } catch (SQLException e) {
+            // discarded
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link HistoryStore} in a relational database, so that many game
+ * installations can share one central history.
+ * <p>
+ * Sessions live in the table {@code game_session}, one row per session, with
+ * indexes on the play time and on difficulty and play time. A batch of
+ * changes from {@link GameHistory}'s background writer is applied in a single
+ * transaction with batched prepared statements, so recording a session never
+ * rewrites the history. Session ids are reserved in blocks from the one-row
+ * table {@code game_session_seq}, which is updated under the database's row
+ * lock, so several clients never hand out the same id. The tables and indexes
+ * are created on first use.
+ * <p>
+ * Each row records the client that played it. A store reads, removes and
+ * clears only its own client's sessions, so clearing one installation's
+ * history leaves the others alone. As the id sequence is shared,
+ * {@link #resetIds()} is not supported: ids keep growing after a clear.
+ * Sessions are inserted without replacing existing rows, so a duplicate id
+ * fails the batch instead of overwriting another client's session.
+ * <p>
+ * The SQL sticks to {@code CREATE ... IF NOT EXISTS}, {@code GREATEST} and
+ * standard types, so it runs on PostgreSQL (whose driver the build includes)
+ * and on embedded databases such as H2. Connections come from a small
+ * {@link JdbcConnectionPool}.
+ * <p>
+ * Other clients' changes are not polled: the {@link GameHistory} in memory
+ * shows the sessions present when it was opened plus its own changes. Reports
+ * over the whole fleet use {@link #findSessions(String, long, long)}, which
+ * queries the database directly.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class JdbcHistoryStore implements HistoryStore {
+    /** Columns of a session, in the order used by all statements. */
+    private static final String COLUMNS = "session_id, client_id, played_at, difficulty, difficulty_key, total_rounds, "
+            + "total_score, best_score, worst_score, rounds";
+
+    /** Statements that create the schema; each is safe to run again. */
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS game_session (session_id INT PRIMARY KEY, "
+                    + "client_id VARCHAR(64) NOT NULL, played_at BIGINT NOT NULL, difficulty VARCHAR(64), "
+                    + "difficulty_key VARCHAR(64) NOT NULL, total_rounds INT NOT NULL, "
+                    + "total_score DOUBLE PRECISION NOT NULL, best_score DOUBLE PRECISION NOT NULL, "
+                    + "worst_score DOUBLE PRECISION NOT NULL, rounds VARCHAR(4000))",
+            "CREATE INDEX IF NOT EXISTS game_session_client ON game_session (client_id, session_id)",
+            "CREATE INDEX IF NOT EXISTS game_session_played_at ON game_session (played_at)",
+            "CREATE INDEX IF NOT EXISTS game_session_difficulty_played_at "
+                    + "ON game_session (difficulty_key, played_at)",
+            "CREATE TABLE IF NOT EXISTS game_session_seq (id INT PRIMARY KEY, last_id INT NOT NULL)",
+    };
+
+    /** Number of rows fetched per round trip when reading many sessions. */
+    private static final int FETCH_SIZE = 1000;
+
+    /** The connections to the database. */
+    private final JdbcConnectionPool pool;
+
+    /** The client whose sessions this store reads and changes. */
+    private final String client;
+
+    /**
+     * Creates a store over the given database and creates the tables if they
+     * do not exist. Problems are logged to stderr; the store then fails on
+     * use, and {@link GameHistory} retries its writes.
+     *
+     * @param url      the JDBC URL, e.g. {@code jdbc:postgresql://host/db}
+     * @param user     the database user, or {@code null} if the URL carries
+     *                 the credentials
+     * @param password the database password, or {@code null}
+     * @param client   a name unique to this installation, e.g. the host
+     *                 name; at most 64 characters
+     * @param poolSize the maximum number of open connections
+     */
+    public JdbcHistoryStore(String url, String user, String password, String client, int poolSize) {
+        this.pool = new JdbcConnectionPool(url, user, password, poolSize);
+        this.client = client;
+        try {
+            createSchema();
+        } catch (SQLException e) {
+            System.err.println("Error creating game history tables: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads this client's sessions.
+     */
+    @Override
+    public List<GameSession> readAll() {
+        List<GameSession> sessions = new ArrayList<>();
+        try {
+            pool.inTransaction(c -> { // a transaction lets drivers such as PostgreSQL stream the rows
+                try (PreparedStatement select = c.prepareStatement(
+                        "SELECT " + COLUMNS + " FROM game_session WHERE client_id = ? ORDER BY session_id")) {
+                    select.setString(1, client);
+                    select.setFetchSize(FETCH_SIZE);
+                    readSessions(select, sessions);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error loading game history: " + e.getMessage());
+        }
+        return sessions;
+    }
+
+    /**
+     * Returns the higher of the largest id stored by any client and the id
+     * sequence.
+     */
+    @Override
+    public int lastId() {
+        try {
+            return pool.withConnection(c -> {
+                try (Statement statement = c.createStatement();
+                        ResultSet max = statement.executeQuery("SELECT MAX(session_id) FROM game_session")) {
+                    max.next();
+                    return Math.max(max.getInt(1), readSequence(c));
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error reading last session id: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    @Override
+    public int reserveIds(int floor, int count) throws IOException {
+        try {
+            return pool.inTransaction(c -> {
+                try (PreparedStatement update = c.prepareStatement(
+                        "UPDATE game_session_seq SET last_id = GREATEST(last_id, ?) + ? WHERE id = 1")) {
+                    update.setInt(1, floor);
+                    update.setInt(2, count);
+                    update.executeUpdate(); // holds the row lock until commit
+                }
+                return readSequence(c) - count + 1;
+            });
+        } catch (SQLException e) {
+            throw new IOException("cannot reserve session ids: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void releaseIds(int from, int to) throws IOException {
+        try {
+            pool.withConnection(c -> {
+                try (PreparedStatement update = c.prepareStatement(
+                        "UPDATE game_session_seq SET last_id = ? WHERE id = 1 AND last_id = ?")) {
+                    update.setInt(1, from - 1);
+                    update.setInt(2, to);
+                    return update.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("cannot release session ids: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Applies the net effect of the batch in one transaction: at most one
+     * {@code DELETE} of this client's rows (if the batch clears the history),
+     * one batch of deletes for the removed ids and one batch of inserts. As
+     * the transaction is rolled back on failure, a retried batch does not
+     * meet its own rows; an id that is already taken fails the batch.
+     */
+    @Override
+    public void write(List<Change> changes) throws IOException {
+        boolean cleared = false;
+        Set<Integer> removed = new LinkedHashSet<>();
+        Map<Integer, GameSession> added = new LinkedHashMap<>();
+        for (Change change : changes) {
+            switch (change.kind()) {
+                case ADD -> added.put(change.sessionId(), change.session());
+                case REMOVE -> {
+                    added.remove(change.sessionId());
+                    removed.add(change.sessionId());
+                }
+                case CLEAR -> {
+                    cleared = true;
+                    removed.clear();
+                    added.clear();
+                }
+            }
+        }
+        boolean clearAll = cleared;
+        try {
+            pool.inTransaction(c -> {
+                if (clearAll) {
+                    try (PreparedStatement delete = c.prepareStatement(
+                            "DELETE FROM game_session WHERE client_id = ?")) {
+                        delete.setString(1, client);
+                        delete.executeUpdate();
+                    }
+                }
+                try (PreparedStatement delete = c.prepareStatement(
+                        "DELETE FROM game_session WHERE session_id = ? AND client_id = ?");
+                        PreparedStatement insert = c.prepareStatement(
+                                "INSERT INTO game_session (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (int id : removed) {
+                        delete.setInt(1, id);
+                        delete.setString(2, client);
+                        delete.addBatch();
+                    }
+                    for (GameSession session : added.values()) {
+                        bind(insert, session);
+                        insert.addBatch();
+                    }
+                    if (!removed.isEmpty()) {
+                        delete.executeBatch();
+                    }
+                    if (!added.isEmpty()) {
+                        insert.executeBatch();
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IOException("cannot save game history: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the sessions of all clients played in a time range, optionally only
+     * those of one difficulty. The query uses the index on difficulty and
+     * play time, or on play time alone.
+     *
+     * @param difficulty only return sessions with this difficulty
+     *                   (case-insensitive), or {@code null} for all
+     * @param fromMillis start of the range, inclusive, in epoch milliseconds
+     * @param toMillis   end of the range, exclusive, in epoch milliseconds
+     * @return the matching sessions, oldest first; empty if none match or the
+     *         database cannot be read
+     */
+    public List<GameSession> findSessions(String difficulty, long fromMillis, long toMillis) {
+        List<GameSession> sessions = new ArrayList<>();
+        String sql = "SELECT " + COLUMNS + " FROM game_session WHERE "
+                + (difficulty == null ? "" : "difficulty_key = ? AND ")
+                + "played_at >= ? AND played_at < ? ORDER BY played_at, session_id";
+        try {
+            pool.withConnection(c -> {
+                try (PreparedStatement select = c.prepareStatement(sql)) {
+                    int i = 1;
+                    if (difficulty != null) {
+                        select.setString(i++, keyOf(difficulty));
+                    }
+                    select.setLong(i++, fromMillis);
+                    select.setLong(i, toMillis);
+                    readSessions(select, sessions);
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error querying game history: " + e.getMessage());
+        }
+        return sessions;
+    }
+
+    /**
+     * Closes the idle database connections.
+     */
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Creates the tables and indexes and the row of the id sequence.
+     */
+    private void createSchema() throws SQLException {
+        pool.withConnection(c -> {
+            try (Statement statement = c.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.executeUpdate(sql);
+                }
+                try {
+                    statement.executeUpdate("INSERT INTO game_session_seq (id, last_id) "
+                            + "SELECT 1, 0 WHERE NOT EXISTS (SELECT 1 FROM game_session_seq)");
+                } catch (SQLException e) {
+                    // another client inserted the row at the same time; fine if it exists now
+                    readSequence(c);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads the last id reserved.
+     */
+    private static int readSequence(Connection c) throws SQLException {
+        try (Statement statement = c.createStatement();
+                ResultSet seq = statement.executeQuery("SELECT last_id FROM game_session_seq WHERE id = 1")) {
+            if (!seq.next()) {
+                throw new SQLException("game_session_seq has no row");
+            }
+            return seq.getInt(1);
+        }
+    }
+
+    /**
+     * Sets the parameters of an insert, in the order of {@link #COLUMNS}.
+     */
+    private void bind(PreparedStatement insert, GameSession s) throws SQLException {
+        insert.setInt(1, s.getSessionId());
+        insert.setString(2, client);
+        insert.setLong(3, s.getEpochMillis());
+        if (s.getDifficulty() == null) {
+            insert.setNull(4, Types.VARCHAR);
+        } else {
+            insert.setString(4, s.getDifficulty());
+        }
+        insert.setString(5, keyOf(s.getDifficulty()));
+        insert.setInt(6, s.getTotalRounds());
+        insert.setDouble(7, s.getTotalScore());
+        insert.setDouble(8, s.getBestScore());
+        insert.setDouble(9, s.getWorstScore());
+        if (s.getRounds() == null) {
+            insert.setNull(10, Types.VARCHAR);
+        } else {
+            insert.setString(10, s.getRounds());
+        }
+    }
+
+    /**
+     * Runs a query selecting {@link #COLUMNS} and adds the sessions to
+     * {@code sessions}.
+     */
+    private static void readSessions(PreparedStatement select, List<GameSession> sessions) throws SQLException {
+        try (ResultSet rows = select.executeQuery()) {
+            while (rows.next()) {
+                sessions.add(new GameSession(rows.getInt(1), rows.getLong(3), rows.getString(4), rows.getInt(6),
+                        rows.getDouble(7), rows.getDouble(8), rows.getDouble(9), rows.getString(10)));
+            }
+        }
+    }
+
+    /**
+     * Normalizes a difficulty label for the indexed column, like
+     * {@link HistoryIndex} does.
+     */
+    private static String keyOf(String difficulty) {
+        return difficulty == null ? "" : difficulty.trim().toLowerCase(Locale.ROOT);
+    }
+}
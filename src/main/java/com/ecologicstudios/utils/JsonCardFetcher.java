@@ -5,7 +5,6 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import com.google.gson.Gson;
 
 /**
  * The {@code JsonCardFetcher} class is responsible for loading card data from a
@@ -19,6 +18,12 @@ import com.google.gson.Gson;
  * cards.
  * </p>
  *
+ * <p>
+ * Cards are parsed with {@link CardJsonStream}, which reads the file token by
+ * token instead of building the whole document as a string first. The path may
+ * name a file on disk or a classpath resource.
+ * </p>
+ *
  * @author Ecologic Studios
  * @version 1.0
  */
@@ -35,7 +40,7 @@ public class JsonCardFetcher implements CardFetcher {
      * @param path the file path to the JSON file containing card data
      */
     public JsonCardFetcher(String path) {
-        loadCards(path);
+        allCards = read(path);
     }
 
     /**
@@ -44,7 +49,10 @@ public class JsonCardFetcher implements CardFetcher {
      * @param path the file path to the JSON file to read
      * @return the contents of the JSON file as a string, or empty string if an
      *         error occurs
+     * @deprecated holds the whole file in memory; {@link #loadCards(String)}
+     *             streams the file through {@link CardJsonStream} instead
      */
+    @Deprecated
     public String JsonToString(String path) {
         StringBuilder stringBuilder = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
@@ -61,12 +69,14 @@ public class JsonCardFetcher implements CardFetcher {
     /**
      * Loads cards from the specified JSON file and initializes the {@code allCards}
      * field.
+     * <p>
+     * If the file cannot be read an error is logged to stderr and the fetcher is
+     * left with an empty card list.
      *
      * @param path the path to the JSON file containing card data
      */
     public void loadCards(String path) {
-        Gson gson = new Gson();
-        allCards = gson.fromJson(JsonToString(path), CardWrapper.class);
+        allCards = read(path);
     }
 
     /**
@@ -94,4 +104,19 @@ public class JsonCardFetcher implements CardFetcher {
     public List<Card> getAllCards() {
         return allCards.getCardList();
     }
-}
\ No newline at end of file
+
+    // ------Private helper methods------
+
+    /**
+     * Reads the cards of a file; also used by the constructor, which must not
+     * call the overridable {@link #loadCards(String)}.
+     */
+    private static CardWrapper read(String path) {
+        try {
+            return new CardWrapper(CardJsonStream.read(path));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading cards: " + e.getMessage());
+            return new CardWrapper(new ArrayList<>());
+        }
+    }
+}
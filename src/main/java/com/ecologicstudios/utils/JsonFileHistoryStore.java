@@ -0,0 +1,244 @@
+package com.ecologicstudios.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The original {@link HistoryStore}: the whole history is one pretty-printed
+ * JSON document holding a {@link GameWrapper}.
+ * <p>
+ * Every batch of changes reads and rewrites the whole file, so the cost of a
+ * write grows with the size of the history. The rewrite is atomic: a crash
+ * leaves either the previous or the new version of the file. Several processes
+ * may share the file: each rewrite happens under the history's lock (see
+ * {@link FileLocks}) and starts from the file's current content, so no
+ * process overwrites another's sessions. A process notices that someone else
+ * rewrote the file by its size, modification time and identity, and then
+ * reloads it in {@link #poll()}. New installations use
+ * {@link JsonLinesHistoryStore}; this store remains for files in the old
+ * format and as the source of the one-time migration.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+class JsonFileHistoryStore implements HistoryStore {
+    /** Path to the JSON file used to persist game history. */
+    private final String filePath;
+
+    /** The lock file shared by all processes using {@link #filePath}. */
+    private final Path lockFile;
+
+    /** Source of new session ids. */
+    private final IdSequence sequence;
+
+    /** Jackson mapper used for JSON (de)serialization. */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Signature of the file as this store last read or wrote it. */
+    private String signature;
+
+    /** Whether another process changed the file since the last poll. */
+    private boolean stale;
+
+    /**
+     * Create a store that reads and writes the given file, creating it (and
+     * its parent directories) if it does not exist.
+     *
+     * @param filePath path to the JSON history file
+     */
+    JsonFileHistoryStore(String filePath) {
+        this.filePath = filePath;
+        this.lockFile = FileLocks.lockFileOf(Path.of(filePath));
+        this.sequence = new IdSequence(Path.of(filePath));
+
+        // create history file if it does not exist
+        try {
+            File file = new File(filePath);
+
+            if (!file.exists()) {
+                if (file.getParentFile() != null) {
+                    file.getParentFile().mkdirs();
+                }
+                if (!file.createNewFile()) {
+                    throw new IOException(String.format("was not able to create file: %s", file.getParent()));
+                }
+            }
+
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized List<GameSession> readAll() {
+        signature = signature(); // before reading: a rewrite in between shows up in the next poll
+        stale = false;
+        return loadGameData().getGameSessions();
+    }
+
+    /**
+     * Returns the highest id in the file or in the id sequence, which also
+     * remembers the ids of removed sessions.
+     */
+    @Override
+    public int lastId() {
+        return Math.max(HistoryStore.super.lastId(), sequence.read());
+    }
+
+    @Override
+    public int reserveIds(int floor, int count) throws IOException {
+        return sequence.reserve(floor, count);
+    }
+
+    @Override
+    public void releaseIds(int from, int to) throws IOException {
+        sequence.release(from, to);
+    }
+
+    @Override
+    public void resetIds() throws IOException {
+        sequence.reset();
+    }
+
+    /**
+     * Reloads the whole file if another process rewrote it since this store
+     * last read or wrote it.
+     */
+    @Override
+    public synchronized List<Change> poll() {
+        if (!stale && signature().equals(signature)) {
+            return List.of();
+        }
+        List<Change> changes = new ArrayList<>();
+        changes.add(Change.clear());
+        for (GameSession s : readAll()) {
+            changes.add(Change.add(s));
+        }
+        return changes;
+    }
+
+    /**
+     * Loads the file once, applies all changes through an index by id and
+     * rewrites it once, so a batch costs O(history + batch). The whole cycle
+     * runs under the history's lock.
+     */
+    @Override
+    public synchronized void write(List<Change> changes) throws IOException {
+        FileLocks.withLock(lockFile, () -> {
+            if (!signature().equals(signature)) {
+                stale = true; // the sessions of other processes are reloaded in the next poll
+            }
+            rewrite(changes);
+            signature = signature();
+            return null;
+        });
+    }
+
+    /**
+     * Reads all sessions like {@link #readAll()}, but fails instead of
+     * returning an empty list if the file cannot be parsed, e.g. before the
+     * file is migrated to another format.
+     *
+     * @return the stored sessions; empty if the file is missing or empty
+     * @throws IOException if the file cannot be read or parsed
+     */
+    synchronized List<GameSession> readAllStrict() throws IOException {
+        return loadGameDataStrict().getGameSessions();
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Applies a batch of changes to the current content of the file.
+     */
+    private void rewrite(List<Change> changes) throws IOException {
+        GameWrapper gameData = loadGameDataStrict(); // never overwrite a file that could not be read
+        Map<Integer, GameSession> sessions = new LinkedHashMap<>();
+        for (GameSession s : gameData.getGameSessions()) {
+            sessions.put(s.getSessionId(), s);
+        }
+        for (Change change : changes) {
+            switch (change.kind()) {
+                case ADD -> sessions.put(change.sessionId(), change.session()); // a retried batch replaces, not duplicates
+                case REMOVE -> sessions.remove(change.sessionId());
+                case CLEAR -> sessions.clear();
+            }
+        }
+        gameData.setGameSessions(new ArrayList<>(sessions.values()));
+        saveGameData(gameData);
+    }
+
+    /**
+     * Returns the file's identity, size and modification time. Every rewrite
+     * creates a new file, so the signature changes even if size and time do not.
+     */
+    private String signature() {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Path.of(filePath), BasicFileAttributes.class);
+            return attributes.fileKey() + "/" + attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return "missing";
+        }
+    }
+
+    /**
+     * Loads game history from the configured JSON file.
+     *
+     * If the file does not exist or an I/O error occurs, an empty
+     * {@link GameWrapper}
+     * is returned so callers always receive a non-null container.
+     *
+     * @return the deserialized {@link GameWrapper} read from disk, or an empty
+     *         wrapper if missing/error
+     */
+    private GameWrapper loadGameData() {
+        try {
+            File file = new File(filePath);
+            // if file is empty
+            if (file.length() == 0) {
+                return new GameWrapper();
+            }
+            return mapper.readValue(file, GameWrapper.class);
+        } catch (IOException e) {
+            System.err.println("Error loading game history: " + e.getMessage());
+            return new GameWrapper();
+        }
+    }
+
+    /**
+     * Loads game history like {@link #loadGameData()}, but fails instead of
+     * returning an empty wrapper if the file cannot be parsed.
+     *
+     * @return the deserialized {@link GameWrapper}, or an empty wrapper if the
+     *         file is missing or empty
+     * @throws IOException if the file cannot be read or parsed
+     */
+    private GameWrapper loadGameDataStrict() throws IOException {
+        File file = new File(filePath);
+        if (file.length() == 0) {
+            return new GameWrapper();
+        }
+        return mapper.readValue(file, GameWrapper.class);
+    }
+
+    /**
+     * Persists the given {@link GameWrapper} to the configured JSON file using
+     * the mapper's pretty-printer. The file is replaced atomically (see
+     * {@link AtomicFiles}), so a crash mid-write leaves the previous version.
+     *
+     * @param gameData the game data to save
+     * @throws IOException if the file cannot be written
+     */
+    private void saveGameData(GameWrapper gameData) throws IOException {
+        AtomicFiles.replace(Path.of(filePath), out -> mapper.writerWithDefaultPrettyPrinter().writeValue(out, gameData));
+    }
+}
@@ -0,0 +1,633 @@
+package com.ecologicstudios.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * An append-only {@link HistoryStore} in JSON Lines format.
+ * <p>
+ * Every added session is written as one line, so adding a session costs the
+ * same no matter how long the history is. The file starts with the header
+ * {@code {"version":2,"generation":<n>}}, and each session is a positional
+ * JSON array:
+ * <pre>
+ * [sessionId, epochMillis, difficulty, totalRounds, totalScore, bestScore, worstScore, rounds]
+ * </pre>
+ * where {@code difficulty} is the ordinal of a {@link Difficulty} whose label
+ * matches exactly, or else the label as a string, and the optional
+ * {@code rounds} holds the answers packed by {@link RoundLog#encode()}. Files written by earlier
+ * versions hold one JSON object with field names and a formatted timestamp
+ * per line and no header; they are still read, and rewritten in the current
+ * format when the store is opened.
+ * Removing a session appends a tombstone line {@code {"removed":<id>}} instead
+ * of rewriting the file, and clearing the history replaces it. A batch of
+ * changes is appended with a single write. Reads stream the file line by line
+ * and apply the tombstones; a line that cannot be parsed (e.g. one cut short by
+ * a crash) is logged and skipped.
+ * <p>
+ * Several processes may share the file. Appends and replacements happen under
+ * the history's lock (see {@link FileLocks}), which is held only for the
+ * append itself. The store remembers how many bytes of the file it has seen;
+ * before appending, and in {@link #poll()}, it reads the complete lines other
+ * processes added after that point, so their sessions show up without
+ * re-reading the whole file. A line still being written by another process is
+ * left for the next poll. A replaced file is recognized by its file key, or,
+ * on file systems without file keys such as Windows, by the random
+ * {@code generation} in its header, which is new whenever the file is
+ * created or replaced.
+ * <p>
+ * Tombstones also keep the ids of removed sessions known, so {@link #lastId()}
+ * never hands out an id twice, except after the history is cleared.
+ * <p>
+ * Removed sessions and their tombstones stay in the file until it is
+ * compacted: when a write leaves more dead lines than live sessions (and at
+ * least {@link #COMPACT_MIN_DEAD_LINES}), the file is rewritten with only the
+ * live sessions under the same lock. Other processes see a replaced file and
+ * reload it, as after a clear. The rewrite costs one pass over the file, and
+ * happens at most once per that many removals, so it does not add to the
+ * cost of a write on average.
+ * <p>
+ * If the history file does not exist yet but a history in the old
+ * {@link GameWrapper} format is given, its sessions are copied into the new
+ * file once and the old file is renamed to {@code <name>.migrated}.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+class JsonLinesHistoryStore implements HistoryStore {
+    /** Start of a tombstone line; the session id follows. */
+    private static final String TOMBSTONE_PREFIX = "{\"removed\":";
+
+    /** Start of the header line; the format version follows. */
+    private static final String HEADER_PREFIX = "{\"version\":";
+
+    /** Start of the header line of files in the current format; the generation follows. */
+    private static final String HEADER = HEADER_PREFIX + "2,\"generation\":";
+
+    /** Header line of files in the current format written before headers had a generation. */
+    private static final String HEADER_WITHOUT_GENERATION = HEADER_PREFIX + "2}";
+
+    /** Fewest dead lines (removed sessions and tombstones) worth a compaction. */
+    static final int COMPACT_MIN_DEAD_LINES = 1000;
+
+    /** Difficulties by ordinal, for decoding. */
+    private static final Difficulty[] DIFFICULTIES = Difficulty.values();
+
+    /** The history file. */
+    private final Path file;
+
+    /** The lock file shared by all processes using {@link #file}. */
+    private final Path lockFile;
+
+    /** Source of new session ids. */
+    private final IdSequence sequence;
+
+    /** Reader for session lines in the old format. */
+    private final ObjectReader reader;
+
+    /** Parser factory for session lines in the current format. */
+    private final JsonFactory factory;
+
+    /** Highest session id ever seen; valid once {@link #scanned} is set. */
+    private int lastId;
+
+    /** Whether the file has been read once. */
+    private boolean scanned;
+
+    /** Number of bytes of complete lines already read or written. */
+    private long offset;
+
+    /** Identity of the file {@link #offset} refers to (see {@link #identify}); changes when the file is replaced. */
+    private Object fileIdentity;
+
+    /** Number of live sessions in the file, as far as this store has read it. */
+    private long liveLines;
+
+    /** Number of lines in the file that no longer hold a live session. */
+    private long deadLines;
+
+    /** Changes by other processes found while appending, not yet polled. */
+    private final List<Change> foreign = new ArrayList<>();
+
+    /**
+     * Creates a store over the given JSON Lines file.
+     *
+     * @param file   the history file; created on the first write
+     * @param legacy a history file in the old {@link GameWrapper} format to
+     *               migrate if {@code file} does not exist yet, or {@code null}
+     */
+    JsonLinesHistoryStore(Path file, Path legacy) {
+        this.file = file;
+        this.lockFile = FileLocks.lockFileOf(file);
+        this.sequence = new IdSequence(file);
+        ObjectMapper mapper = new ObjectMapper();
+        this.reader = mapper.readerFor(GameSession.class);
+        this.factory = JsonFactory.builder().enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER).build();
+
+        if (legacy != null && !Files.exists(file) && Files.isRegularFile(legacy)) {
+            migrate(legacy);
+        } else if (Files.exists(file)) {
+            upgrade();
+        }
+    }
+
+    @Override
+    public synchronized List<GameSession> readAll() {
+        return new ArrayList<>(scan().values());
+    }
+
+    /**
+     * Returns the highest id in the file or in the id sequence; the sequence
+     * may lag behind the file after a crash, and the file forgets ids removed
+     * before it was cleared or upgraded.
+     */
+    @Override
+    public synchronized int lastId() {
+        if (!scanned) {
+            scan();
+        }
+        return Math.max(lastId, sequence.read());
+    }
+
+    @Override
+    public int reserveIds(int floor, int count) throws IOException {
+        return sequence.reserve(floor, count);
+    }
+
+    @Override
+    public void releaseIds(int from, int to) throws IOException {
+        sequence.release(from, to);
+    }
+
+    @Override
+    public void resetIds() throws IOException {
+        sequence.reset();
+    }
+
+    @Override
+    public synchronized List<Change> poll() throws IOException {
+        List<Change> changes = new ArrayList<>(foreign);
+        foreign.clear();
+        changes.addAll(readNew());
+        return changes;
+    }
+
+    /**
+     * Appends one line per change with a single write and a single sync (group
+     * commit). If the batch contains a {@link Change.Kind#CLEAR}, the file is
+     * instead atomically replaced by the changes after the last one.
+     */
+    @Override
+    public synchronized void write(List<Change> changes) throws IOException {
+        int from = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            if (changes.get(i).kind() == Change.Kind.CLEAR) {
+                from = i + 1;
+            }
+        }
+        List<Change> written = changes.subList(from, changes.size());
+        StringBuilder lines = new StringBuilder();
+        int maxId = 0;
+        for (Change change : written) {
+            if (change.kind() == Change.Kind.ADD) {
+                encode(change.session(), lines);
+            } else {
+                lines.append(TOMBSTONE_PREFIX).append(change.sessionId()).append("}\n");
+            }
+            maxId = Math.max(maxId, change.sessionId());
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        boolean replace = from > 0;
+
+        FileLocks.withLock(lockFile, () -> {
+            foreign.addAll(readNew()); // catch up first, so that the offset stays exact
+            if (replace) {
+                AtomicFiles.replace(file, out -> {
+                    out.write(headerBytes());
+                    out.write(bytes);
+                });
+                foreign.clear(); // the file now holds only this batch
+            } else if (!Files.exists(file) || Files.size(file) == 0) {
+                AtomicFiles.append(file, concat(headerBytes(), bytes));
+            } else {
+                if (foreign.stream().anyMatch(c -> c.kind() == Change.Kind.CLEAR)) {
+                    foreign.addAll(changes); // a reload read before this append must include it
+                }
+                boolean partialTail = Files.exists(file) && Files.size(file) > offset;
+                // keep a record cut short by a crash from swallowing the first new one
+                AtomicFiles.append(file, partialTail ? concat(new byte[] {'\n'}, bytes) : bytes);
+            }
+            if (replace) {
+                liveLines = 0;
+                deadLines = 0;
+            }
+            written.forEach(this::count);
+            if (deadLines >= COMPACT_MIN_DEAD_LINES && deadLines > liveLines) {
+                compact();
+            }
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            fileIdentity = identify(attributes);
+            offset = attributes.size();
+            return null;
+        });
+        lastId = replace ? maxId : Math.max(lastId, maxId);
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Streams the whole file and returns the live sessions by id, in the order
+     * they were added. Also refreshes {@link #lastId}, the line counts and the
+     * read position.
+     */
+    private Map<Integer, GameSession> scan() {
+        Map<Integer, GameSession> sessions = new LinkedHashMap<>();
+        int[] maxId = {0};
+        long[] lines = {0};
+        try {
+            readFrom(0, change -> {
+                if (change.kind() == Change.Kind.ADD) {
+                    sessions.put(change.sessionId(), change.session());
+                } else {
+                    sessions.remove(change.sessionId());
+                }
+                maxId[0] = Math.max(maxId[0], change.sessionId());
+                lines[0]++;
+            });
+        } catch (IOException e) {
+            System.err.println("Error loading game history: " + e.getMessage());
+            return sessions;
+        }
+        foreign.clear();
+        lastId = maxId[0];
+        liveLines = sessions.size();
+        deadLines = lines[0] - sessions.size();
+        scanned = true;
+        return sessions;
+    }
+
+    /**
+     * Updates the line counts for one change appended to the file. A removal
+     * kills the session's line and adds a tombstone.
+     */
+    private void count(Change change) {
+        if (change.kind() == Change.Kind.ADD) {
+            liveLines++;
+        } else {
+            liveLines = Math.max(0, liveLines - 1);
+            deadLines += 2;
+        }
+    }
+
+    /**
+     * Rewrites the file with only its live sessions and the highest id used.
+     * Changes by other processes that were read but not polled yet are kept
+     * for the next poll. Must be called while holding the history's lock.
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        List<Change> unpolled = new ArrayList<>(foreign);
+        List<GameSession> sessions = new ArrayList<>(scan().values());
+        foreign.addAll(unpolled);
+        long dead = deadLines;
+        AtomicFiles.replace(file, out -> out.write(encodeAll(sessions, lastId)));
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        fileIdentity = identify(attributes);
+        offset = attributes.size();
+        liveLines = sessions.size();
+        deadLines = 0;
+        System.err.printf("Compacted %s: dropped %d dead lines, kept %d sessions in %d ms%n",
+                file, dead, sessions.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Returns the changes appended to the file since the last read or write.
+     * If the file was replaced or shrunk meanwhile, the whole file is read
+     * again and returned as a {@link Change.Kind#CLEAR} followed by its
+     * sessions.
+     */
+    private List<Change> readNew() throws IOException {
+        List<Change> changes = new ArrayList<>();
+        if (!Files.exists(file)) {
+            if (offset > 0) {
+                changes.add(Change.clear());
+                offset = 0;
+                fileIdentity = null;
+            }
+            return changes;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!Objects.equals(identify(attributes), fileIdentity) || attributes.size() < offset) {
+            changes.add(Change.clear());
+            for (GameSession s : scan().values()) {
+                changes.add(Change.add(s));
+            }
+        } else if (attributes.size() > offset) {
+            readFrom(offset, change -> {
+                changes.add(change);
+                count(change);
+                lastId = Math.max(lastId, change.sessionId());
+            });
+        }
+        return changes;
+    }
+
+    /**
+     * Reads the complete lines starting at byte {@code from} and hands each
+     * record to {@code sink}; malformed lines are skipped. Afterwards
+     * {@link #offset} points behind the last complete line and
+     * {@link #fileIdentity} identifies the file read.
+     */
+    private void readFrom(long from, Consumer<Change> sink) throws IOException {
+        if (!Files.exists(file)) {
+            offset = 0;
+            fileIdentity = null;
+            return;
+        }
+        // identify the file before opening it: if it is replaced in between, the next poll re-reads it
+        Object key = identify(Files.readAttributes(file, BasicFileAttributes.class));
+        long position = from;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(from);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) != -1) {
+                byte[] bytes = buffer.array();
+                int start = 0;
+                for (int i = 0; i < buffer.position(); i++) {
+                    if (bytes[i] == '\n') {
+                        Change change = parseLine(bytes, start, i - start);
+                        if (change != null) {
+                            sink.accept(change);
+                        }
+                        position += i + 1 - start;
+                        start = i + 1;
+                    }
+                }
+                if (start == 0 && !buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip()); // a very long line
+                } else {
+                    buffer.limit(buffer.position()).position(start);
+                    buffer.compact();
+                }
+            }
+        }
+        offset = position;
+        fileIdentity = key;
+    }
+
+    /**
+     * Parses one line into a change; returns {@code null} for headers, blank
+     * and malformed lines. Session lines in the current format are parsed
+     * straight from the bytes.
+     */
+    private Change parseLine(byte[] bytes, int off, int len) {
+        if (len > 0 && bytes[off] == '[') {
+            GameSession s = decode(bytes, off, len);
+            return s == null ? null : Change.add(s);
+        }
+        String line = new String(bytes, off, len, StandardCharsets.UTF_8);
+        if (line.startsWith(TOMBSTONE_PREFIX)) {
+            int id = tombstoneId(line);
+            return id < 0 ? null : Change.remove(id);
+        }
+        if (line.isBlank() || line.startsWith(HEADER_PREFIX)) {
+            return null;
+        }
+        GameSession s = parseOldFormat(line);
+        return s == null ? null : Change.add(s);
+    }
+
+    /**
+     * Appends a session as one line in the current format.
+     */
+    private static void encode(GameSession s, StringBuilder out) {
+        out.append('[').append(s.getSessionId()).append(',').append(s.getEpochMillis()).append(',');
+        Difficulty difficulty = Difficulty.fromLabel(s.getDifficulty());
+        if (difficulty != null && difficulty.getLabel().equals(s.getDifficulty())) {
+            out.append(difficulty.ordinal());
+        } else if (s.getDifficulty() == null) {
+            out.append("null");
+        } else {
+            out.append('"').append(JsonStringEncoder.getInstance().quoteAsString(s.getDifficulty())).append('"');
+        }
+        out.append(',').append(s.getTotalRounds())
+                .append(',').append(s.getTotalScore())
+                .append(',').append(s.getBestScore())
+                .append(',').append(s.getWorstScore());
+        if (s.getRounds() != null) {
+            out.append(",\"").append(JsonStringEncoder.getInstance().quoteAsString(s.getRounds())).append('"');
+        }
+        out.append("]\n");
+    }
+
+    /**
+     * Parses a session line in the current format, or logs and returns
+     * {@code null} if it is malformed.
+     */
+    private GameSession decode(byte[] bytes, int off, int len) {
+        try (JsonParser parser = factory.createParser(bytes, off, len)) {
+            parser.nextToken(); // [
+            int id = nextNumber(parser).intValue();
+            long epochMillis = nextNumber(parser).longValue();
+            String difficulty = switch (parser.nextToken()) {
+                case VALUE_NUMBER_INT -> DIFFICULTIES[parser.getIntValue()].getLabel();
+                case VALUE_STRING -> parser.getText();
+                case VALUE_NULL -> null;
+                default -> throw new IOException("bad difficulty " + parser.getText());
+            };
+            int totalRounds = nextNumber(parser).intValue();
+            double totalScore = nextNumber(parser).doubleValue();
+            double bestScore = nextNumber(parser).doubleValue();
+            double worstScore = nextNumber(parser).doubleValue();
+            String rounds = null;
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING) {
+                rounds = parser.getText();
+                token = parser.nextToken();
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw new IOException("too many values");
+            }
+            return new GameSession(id, epochMillis, difficulty, totalRounds, totalScore, bestScore, worstScore,
+                    rounds);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Skipping malformed history record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads the next array element, which must be a number.
+     */
+    private static Number nextNumber(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new IOException("expected a number but found " + token);
+        }
+        return parser.getNumberValue();
+    }
+
+    /**
+     * Parses a session line in the old format, or logs and returns {@code null}
+     * if it is malformed.
+     */
+    private GameSession parseOldFormat(String line) {
+        try {
+            return reader.readValue(line);
+        } catch (IOException e) {
+            System.err.println("Skipping malformed history record: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns a header line of the current format with a new random
+     * generation.
+     */
+    private static byte[] headerBytes() {
+        return header().append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a header of the current format with a new random generation,
+     * without the line break.
+     */
+    private static StringBuilder header() {
+        return new StringBuilder(HEADER).append(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE).append('}');
+    }
+
+    /**
+     * Returns what tells the file apart from the files that replace it: its
+     * file key, or its header line if the file system has no file keys.
+     */
+    private Object identify(BasicFileAttributes attributes) throws IOException {
+        Object key = attributes.fileKey();
+        return key != null ? key : firstLine();
+    }
+
+    /**
+     * Returns {@code first} followed by {@code rest}.
+     */
+    private static byte[] concat(byte[] first, byte[] rest) {
+        byte[] bytes = Arrays.copyOf(first, first.length + rest.length);
+        System.arraycopy(rest, 0, bytes, first.length, rest.length);
+        return bytes;
+    }
+
+    /**
+     * Returns the session id of a tombstone line, or -1 if it is malformed.
+     */
+    private static int tombstoneId(String line) {
+        try {
+            return Integer.parseInt(line.substring(TOMBSTONE_PREFIX.length(), line.lastIndexOf('}')).trim());
+        } catch (RuntimeException e) {
+            System.err.println("Skipping malformed history record: " + line);
+            return -1;
+        }
+    }
+
+    /**
+     * Copies the sessions of an old-format history file into the new file and
+     * renames the old file. This happens under the history's lock, so only
+     * one of several processes starting together migrates. The new file is
+     * written atomically (see {@link AtomicFiles}), so an interrupted migration
+     * is simply retried. If the old file cannot be parsed, nothing is migrated
+     * and the old file is left in place, so no sessions are lost.
+     */
+    private void migrate(Path legacy) {
+        try {
+            FileLocks.withLock(lockFile, () -> {
+                if (Files.exists(file) || !Files.isRegularFile(legacy)) {
+                    return null; // another process was first
+                }
+                List<GameSession> sessions = new JsonFileHistoryStore(legacy.toString()).readAllStrict();
+                AtomicFiles.replace(file, out -> out.write(encodeAll(sessions, 0)));
+                Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"),
+                        StandardCopyOption.REPLACE_EXISTING);
+                System.err.println("Migrated " + sessions.size() + " sessions from " + legacy + " to " + file);
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Error migrating game history from " + legacy + ", left in place: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites a file in the old format in the current format. Sessions and
+     * the highest id ever used are kept; the tombstones of other removed
+     * sessions are dropped. Runs under the history's lock, so only one of
+     * several processes upgrades the file, and the others reload it.
+     */
+    private void upgrade() {
+        try {
+            FileLocks.withLock(lockFile, () -> {
+                String first = firstLine();
+                if (Files.size(file) == 0 || HEADER_WITHOUT_GENERATION.equals(first) || first.startsWith(HEADER)) {
+                    return null;
+                }
+                long start = System.nanoTime();
+                List<GameSession> sessions = new ArrayList<>(scan().values());
+                AtomicFiles.replace(file, out -> out.write(encodeAll(sessions, lastId)));
+                scanned = false; // re-read lazily against the new file
+                offset = 0;
+                fileIdentity = null;
+                System.err.printf("Upgraded %d sessions in %s to format version 2 in %d ms%n",
+                        sessions.size(), file, (System.nanoTime() - start) / 1_000_000);
+                return null;
+            });
+        } catch (IOException e) {
+            System.err.println("Error upgrading game history " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the first line of the file, or {@code null} if it has none.
+     */
+    private String firstLine() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return in.readLine();
+        }
+    }
+
+    /**
+     * Encodes a whole file in the current format: the header, the sessions
+     * and, if {@code lastId} is higher than every session id, a tombstone for
+     * it, so that the id is not handed out again.
+     */
+    private static byte[] encodeAll(List<GameSession> sessions, int lastId) {
+        StringBuilder lines = header().append('\n');
+        int maxId = 0;
+        for (GameSession s : sessions) {
+            encode(s, lines);
+            maxId = Math.max(maxId, s.getSessionId());
+        }
+        if (lastId > maxId) {
+            lines.append(TOMBSTONE_PREFIX).append(lastId).append("}\n");
+        }
+        return lines.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
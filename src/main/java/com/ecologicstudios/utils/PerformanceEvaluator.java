@@ -1,23 +1,35 @@
 package com.ecologicstudios.utils;
 
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
+import java.util.OptionalDouble;
 
 /**
  * The PerformanceEvaluator class evaluates the performance of numerical values
  * by calculating their percentile based on a baseline using statistical methods.
  * It uses a StandardDeviationCalculator to compute the mean and standard deviation
  * of the baseline values.
+ *
+ * <p>The baseline statistics are kept up to date as values arrive: when a new
+ * value is inserted, the previous latest value joins the baseline calculator,
+ * which keeps running statistics. No values are stored, and
+ * {@link #evaluate()} costs O(1) however many values were inserted. As a
+ * {@link DoubleEvaluator} it also takes and returns primitive values, so
+ * neither the scores nor the percentile need to be boxed.</p>
  * 
  * @author Ecologic Studios
  * @version 1.0
  */
-public class PerformanceEvaluator implements Evaluator<Number> {
-    private final List<Number> values = new LinkedList<>();
+public class PerformanceEvaluator implements Evaluator<Number>, DoubleEvaluator {
+    /** Running statistics of all values but the latest. */
     private final StandardDeviationCalculator calculator = new StandardDeviationCalculator();
 
+    /** The value inserted last; valid if {@link #count} is positive. */
+    private double latest;
+
+    /** Number of values inserted. */
+    private long count;
+
     /**
      * Default constructor for PerformanceEvaluator.
      */
@@ -30,7 +42,21 @@ public class PerformanceEvaluator implements Evaluator<Number> {
      */
     @Override
     public void insertValue(Number value) {
-        values.add(value);
+        insertValue(value.doubleValue());
+    }
+
+    /**
+     * Inserts a single value into the evaluator without boxing it.
+     *
+     * @param value The value to be added.
+     */
+    @Override
+    public void insertValue(double value) {
+        if (count > 0) {
+            calculator.insertValue(latest);
+        }
+        latest = value;
+        count++;
     }
 
     /**
@@ -40,7 +66,9 @@ public class PerformanceEvaluator implements Evaluator<Number> {
      */
     @Override
     public void insertValues(Collection<? extends Number> list) {
-        values.addAll(list);
+        for (Number value : list) {
+            insertValue(value.doubleValue());
+        }
     }
 
     /**
@@ -48,8 +76,9 @@ public class PerformanceEvaluator implements Evaluator<Number> {
      */
     @Override
     public void clear() {
-        values.clear();
         calculator.clear();
+        latest = 0;
+        count = 0;
     }
 
     /**
@@ -74,26 +103,40 @@ public class PerformanceEvaluator implements Evaluator<Number> {
      */
     @Override
     public Optional<Number> evaluate() {
-        int n = values.size();
-        if (n < 3) return Optional.empty();
-
-        List<Number> baseline = values.subList(0, n - 1);
-        double latest = values.get(n - 1).doubleValue();
+        if (count < 3) return Optional.empty();
+        return Optional.of(percentile());
+    }
 
-        calculator.clear();
-        calculator.insertValues(baseline);
+    /**
+     * Evaluates the latest value like {@link #evaluate()}, without boxing the
+     * result.
+     *
+     * @return An OptionalDouble containing the percentile value, or
+     *         OptionalDouble.empty() if fewer than 3 total values are present.
+     */
+    @Override
+    public OptionalDouble evaluateAsDouble() {
+        if (count < 3) return OptionalDouble.empty();
+        return OptionalDouble.of(percentile());
+    }
 
+    /**
+     * Computes the percentile of the latest value from the running baseline
+     * statistics; does not allocate. Requires at least 3 values.
+     *
+     * @return The percentile value (0..100).
+     */
+    private double percentile() {
         double mean = calculator.getMean();
         double sd   = calculator.getStandardDeviation();
 
         if (sd == 0.0) {
-            if (Double.compare(latest, mean) == 0) return Optional.of(50.0);
-            return Optional.of(latest > mean ? 100.0 : 0.0);
+            if (Double.compare(latest, mean) == 0) return 50.0;
+            return latest > mean ? 100.0 : 0.0;
         }
 
         double z = (latest - mean) / sd;
-        double percentile = 100.0 * (0.5 * (1.0 + erf(z / Math.sqrt(2.0))));
-        return Optional.of(percentile);
+        return 100.0 * (0.5 * (1.0 + erf(z / Math.sqrt(2.0))));
     }
 
     /**
@@ -0,0 +1,393 @@
+package com.ecologicstudios.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * A KLL quantile sketch: answers "what fraction of the values is below x"
+ * and "which value is at fraction q" for a stream of doubles in bounded
+ * memory, without assuming any distribution.
+ * <p>
+ * Values are kept in levels. New values go to level 0; when the sketch holds
+ * more values than its capacity, the lowest full level is sorted and every
+ * other value (starting at a pseudo-random offset) moves up one level, where
+ * it stands for twice as many values, while the rest are dropped. Lower
+ * levels get smaller capacities (a factor of 2/3 per level), so the sketch
+ * keeps about {@code 3k} values however many were added, and the rank error
+ * is about 1% for the default {@code k = 200}. Until the first compaction,
+ * i.e. for the first {@code k} values, all values are kept and answers are
+ * exact.
+ * <p>
+ * Sketches with the same {@code k} can be combined with
+ * {@link #merge(QuantileSketch)}, and {@link #toBytes()} and
+ * {@link #fromBytes(byte[])} store a sketch in a few kilobytes. This class is
+ * not thread-safe.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class QuantileSketch {
+    /** Default accuracy parameter. */
+    public static final int DEFAULT_K = 200;
+
+    /** Capacity factor between one level and the level below it. */
+    private static final double LEVEL_FACTOR = 2.0 / 3.0;
+
+    /** Smallest capacity of a level. */
+    private static final int MIN_LEVEL_CAPACITY = 8;
+
+    /** Version of the format written by {@link #toBytes()}. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Accuracy parameter: capacity of the top level. */
+    private final int k;
+
+    /** The values of each level; a value on level h stands for 2^h values. */
+    private double[][] levels = {new double[MIN_LEVEL_CAPACITY]};
+
+    /** Number of values used in each array of {@link #levels}. */
+    private int[] sizes = {0};
+
+    /** Number of values added. */
+    private long n;
+
+    /** Number of values kept, over all levels. */
+    private int retained;
+
+    /** Capacity of each level for the current number of levels. */
+    private int[] capacities = {MIN_LEVEL_CAPACITY};
+
+    /** Sum of {@link #capacities}: values kept before compacting. */
+    private int capacity = MIN_LEVEL_CAPACITY;
+
+    /** State of the generator of compaction offsets (xorshift). */
+    private long seed = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Creates an empty sketch with the default accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param k accuracy parameter; larger values keep more values and give
+     *          smaller errors (at least 8)
+     * @throws IllegalArgumentException if {@code k} is less than 8
+     */
+    public QuantileSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY) {
+            throw new IllegalArgumentException("k must be at least " + MIN_LEVEL_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        updateCapacities();
+    }
+
+    /**
+     * Adds a value. NaN values are ignored.
+     *
+     * @param value the value
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        n++;
+        if (retained > capacity) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds all values of another sketch to this one. The other sketch is
+     * unchanged.
+     *
+     * @param other the sketch to add
+     * @throws IllegalArgumentException if the sketches have different
+     *                                  {@code k}
+     */
+    public void merge(QuantileSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("cannot merge sketches with k " + k + " and " + other.k);
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        n += other.n;
+        compress();
+    }
+
+    /**
+     * Returns the fraction of the values that are less than {@code value},
+     * counting values equal to it as half.
+     *
+     * @param value the value to rank
+     * @return the rank in {@code [0, 1]}, or NaN if the sketch is empty
+     */
+    public double rank(double value) {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double weight = 0;
+        for (int h = 0; h < levels.length; h++) {
+            long below = 0;
+            long equal = 0;
+            double[] items = levels[h];
+            for (int i = 0; i < sizes[h]; i++) {
+                if (items[i] < value) {
+                    below++;
+                } else if (items[i] == value) {
+                    equal++;
+                }
+            }
+            weight += (below + 0.5 * equal) * (1L << h);
+        }
+        return weight / n;
+    }
+
+    /**
+     * Returns a value whose rank is about {@code q}: the smallest kept value
+     * such that at least a fraction {@code q} of the values is not greater.
+     *
+     * @param q the fraction, in {@code [0, 1]}
+     * @return the value, or NaN if the sketch is empty
+     * @throws IllegalArgumentException if {@code q} is outside {@code [0, 1]}
+     */
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("fraction must be in [0, 1]: " + q);
+        }
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int j = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[j] = levels[h][i];
+                weights[j] = 1L << h;
+                order[j] = j;
+                j++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double target = q * n;
+        long cumulative = 0;
+        for (int i : order) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                return values[i];
+            }
+        }
+        return values[order[retained - 1]];
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return the count
+     */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * Returns whether no values were added.
+     *
+     * @return {@code true} if the sketch is empty
+     */
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /**
+     * Returns the number of values the sketch keeps, which bounds its memory.
+     *
+     * @return the number of kept values
+     */
+    public int getRetainedItems() {
+        return retained;
+    }
+
+    /**
+     * Forgets all values.
+     */
+    public void clear() {
+        levels = new double[][] {new double[MIN_LEVEL_CAPACITY]};
+        sizes = new int[] {0};
+        n = 0;
+        retained = 0;
+        updateCapacities();
+    }
+
+    /**
+     * Serializes the sketch: format version, {@code k}, count, and the values
+     * of every level.
+     *
+     * @return the serialized sketch
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(24 + retained * 8 + levels.length * 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(k);
+            out.writeLong(n);
+            out.writeLong(seed);
+            out.writeInt(levels.length);
+            for (int h = 0; h < levels.length; h++) {
+                out.writeInt(sizes[h]);
+                for (int i = 0; i < sizes[h]; i++) {
+                    out.writeDouble(levels[h][i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen in memory
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores a sketch written by {@link #toBytes()}.
+     *
+     * @param bytes the serialized sketch
+     * @return the sketch
+     * @throws IllegalArgumentException if the bytes are not a valid sketch
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("unsupported sketch version " + version);
+            }
+            QuantileSketch sketch = new QuantileSketch(in.readInt());
+            long n = in.readLong();
+            sketch.seed = in.readLong();
+            int height = in.readInt();
+            if (height < 1 || height > 63) {
+                throw new IllegalArgumentException("bad sketch height " + height);
+            }
+            sketch.levels = new double[height][];
+            sketch.sizes = new int[height];
+            long weight = 0;
+            for (int h = 0; h < height; h++) {
+                int size = in.readInt();
+                if (size < 0 || size > bytes.length / 8) {
+                    throw new IllegalArgumentException("bad level size " + size);
+                }
+                sketch.levels[h] = new double[Math.max(size, MIN_LEVEL_CAPACITY)];
+                for (int i = 0; i < size; i++) {
+                    sketch.levels[h][i] = in.readDouble();
+                }
+                sketch.sizes[h] = size;
+                sketch.retained += size;
+                weight += (long) size << h;
+            }
+            if (in.read() != -1) {
+                throw new IllegalArgumentException("trailing bytes in sketch");
+            }
+            if (weight != n) {
+                throw new IllegalArgumentException("sketch count " + n + " does not match its levels");
+            }
+            sketch.n = n;
+            sketch.updateCapacities();
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("truncated sketch", e);
+        }
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Recomputes the level capacities after the number of levels changed: the
+     * top level holds {@code k} values and each level below 2/3 as many.
+     */
+    private void updateCapacities() {
+        capacities = new int[levels.length];
+        capacity = 0;
+        for (int h = 0; h < levels.length; h++) {
+            int depth = levels.length - 1 - h;
+            capacities[h] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(LEVEL_FACTOR, depth)));
+            capacity += capacities[h];
+        }
+    }
+
+    /**
+     * Compacts the lowest full level until the sketch is within its capacity.
+     */
+    private void compress() {
+        while (retained > capacity) {
+            int h = 0;
+            while (sizes[h] < capacities[h]) {
+                h++;
+            }
+            compact(h);
+        }
+    }
+
+    /**
+     * Sorts level {@code h} and moves every other value to the level above,
+     * where it counts twice; an odd value out stays.
+     */
+    private void compact(int h) {
+        if (h + 1 == levels.length) {
+            levels = Arrays.copyOf(levels, h + 2);
+            levels[h + 1] = new double[MIN_LEVEL_CAPACITY];
+            sizes = Arrays.copyOf(sizes, h + 2);
+            updateCapacities();
+        }
+        double[] items = levels[h];
+        int size = sizes[h];
+        Arrays.sort(items, 0, size);
+        int keep = size & 1; // the smallest value stays if the count is odd
+        int offset = keep + (nextBit() ? 1 : 0);
+        for (int i = offset; i < size; i += 2) {
+            append(h + 1, items[i]);
+        }
+        retained -= size - keep;
+        sizes[h] = keep;
+    }
+
+    /**
+     * Appends a value to a level, adding the level if needed.
+     */
+    private void append(int h, double value) {
+        if (h >= levels.length) {
+            levels = Arrays.copyOf(levels, h + 1);
+            sizes = Arrays.copyOf(sizes, h + 1);
+            for (int i = 0; i <= h; i++) {
+                if (levels[i] == null) {
+                    levels[i] = new double[MIN_LEVEL_CAPACITY];
+                }
+            }
+            updateCapacities();
+        }
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = value;
+        retained++;
+    }
+
+    /**
+     * Returns the next pseudo-random bit for a compaction offset.
+     */
+    private boolean nextBit() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (seed & 1) != 0;
+    }
+}
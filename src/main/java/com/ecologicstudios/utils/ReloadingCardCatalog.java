@@ -0,0 +1,291 @@
+package com.ecologicstudios.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A card source that follows edits to a card file while the game is running.
+ * <p>
+ * The current {@link CardCatalog} is held in an {@link AtomicReference}. After
+ * {@link #start()}, a daemon thread watches the file's directory; when the file
+ * changes it is parsed and validated on that thread and, only if it is valid,
+ * swapped in as the new catalog in one atomic step. Readers on the JavaFX thread
+ * never wait for a reload and never see a half-loaded deck. Games already in
+ * progress keep the deck they were dealt, because {@link CardCatalog#newDeck}
+ * hands out copies.
+ * <p>
+ * A change is detected by comparing the size and modification time of the file
+ * and its update journal (see {@link CardJsonIO}) with the last successfully
+ * loaded version, so events that do not change the file (e.g. an editor
+ * touching it twice) do not cause a re-parse. A file that fails to parse or
+ * validate is counted in {@link #getFailedReloadCount()} and the previous
+ * catalog stays active.
+ * <p>
+ * If the path does not exist on disk (e.g. when running from a packaged jar) the
+ * cards are loaded from the classpath once and never reloaded.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class ReloadingCardCatalog implements AutoCloseable {
+    /**
+     * Time to wait after a file event before reloading, so that editors that
+     * write a file in several steps are picked up once.
+     */
+    private static final long SETTLE_MILLIS = 200;
+
+    /**
+     * Path to the watched card file.
+     */
+    private final String path;
+
+    /**
+     * The active catalog; {@code null} until first loaded.
+     */
+    private final AtomicReference<CardCatalog> current = new AtomicReference<>();
+
+    /**
+     * Size and modification time of the file behind {@link #current}.
+     */
+    private volatile String loadedVersion;
+
+    /** Number of successful reloads after the initial load. */
+    private volatile long reloadCount;
+
+    /** Number of reloads rejected because the file could not be parsed or validated. */
+    private volatile long failedReloadCount;
+
+    /** Duration of the last successful reload (parse, validate and swap), in nanoseconds. */
+    private volatile long lastReloadNanos;
+
+    /** Watcher for the card file's directory; {@code null} when not started. */
+    private WatchService watcher;
+
+    /** Background thread processing file events. */
+    private Thread watchThread;
+
+    /**
+     * Creates a reloading catalog for the given card file. Nothing is read until
+     * {@link #current()} or {@link #start()} is called.
+     *
+     * @param path file system path or classpath resource name of the card file
+     */
+    public ReloadingCardCatalog(String path) {
+        this.path = Objects.requireNonNull(path, "path is null");
+    }
+
+    /**
+     * Returns the active catalog, loading it on the first call.
+     *
+     * @return the current catalog (never null)
+     * @throws UncheckedIOException if the initial load fails
+     */
+    public CardCatalog current() {
+        CardCatalog catalog = current.get();
+        if (catalog != null) {
+            return catalog;
+        }
+        synchronized (this) {
+            if (current.get() == null) {
+                try {
+                    String version = version();
+                    current.set(validate(CardCatalog.load(path)));
+                    loadedVersion = version;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Error loading cards from " + path, e);
+                }
+            }
+            return current.get();
+        }
+    }
+
+    /**
+     * Starts watching the card file for changes in a background daemon thread.
+     * Does nothing if the file is not on disk or the watcher already runs.
+     *
+     * @throws UncheckedIOException if the file system watcher cannot be created
+     */
+    public synchronized void start() {
+        Path file = Path.of(path).toAbsolutePath();
+        if (watcher != null || !Files.isRegularFile(file)) {
+            return;
+        }
+        current(); // make sure there is a baseline before changes are compared
+        try {
+            watcher = file.getFileSystem().newWatchService();
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot watch " + file, e);
+        }
+        watchThread = new Thread(() -> watch(watcher, file.getFileName()), "card-reloader");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+
+    /**
+     * Reloads the card file if it changed since the last successful load.
+     * <p>
+     * This is what the watcher thread calls; it may also be called directly,
+     * e.g. from an admin action. Parsing and validation happen on the calling
+     * thread.
+     *
+     * @return {@code true} if a new catalog was swapped in, {@code false} if the
+     *         file is unchanged or the new contents were rejected
+     */
+    public synchronized boolean reloadIfChanged() {
+        current();
+        long start = System.nanoTime();
+        try {
+            String version = version();
+            if (version == null || version.equals(loadedVersion)) {
+                return false;
+            }
+            current.set(validate(CardCatalog.load(path)));
+            loadedVersion = version;
+            reloadCount++;
+            lastReloadNanos = System.nanoTime() - start;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failedReloadCount++;
+            System.err.println("Rejected card reload from " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns how many times a changed file was successfully swapped in.
+     *
+     * @return successful reload count
+     */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * Returns how many changed files were rejected.
+     *
+     * @return failed reload count
+     */
+    public long getFailedReloadCount() {
+        return failedReloadCount;
+    }
+
+    /**
+     * Returns how long the last successful reload took, from detecting the
+     * change to the swap.
+     *
+     * @return reload latency in nanoseconds, or 0 if no reload happened yet
+     */
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
+    }
+
+    /**
+     * Stops watching the card file. The current catalog stays usable.
+     */
+    @Override
+    public synchronized void close() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            System.err.println("Error closing card watcher: " + e.getMessage());
+        }
+        watchThread.interrupt();
+        watcher = null;
+        watchThread = null;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Event loop of the watcher thread.
+     */
+    private void watch(WatchService service, Path fileName) {
+        Path journalName = CardJsonIO.journalOf(fileName);
+        while (true) {
+            try {
+                WatchKey key = service.take();
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    relevant |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())
+                            || journalName.equals(event.context());
+                }
+                key.reset();
+                if (relevant) {
+                    Thread.sleep(SETTLE_MILLIS);
+                    reloadIfChanged();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Describes the current size and modification time of the file and its
+     * journal, or returns {@code null} if the file is not on disk.
+     */
+    private String version() throws IOException {
+        Path file = Path.of(path);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String version = attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+        Path journal = CardJsonIO.journalOf(file);
+        if (Files.exists(journal)) {
+            attributes = Files.readAttributes(journal, BasicFileAttributes.class);
+            version += "+" + attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+        }
+        return version;
+    }
+
+    /**
+     * Checks that a freshly loaded catalog can be played: it has cards, ids are
+     * unique, and every card has a known difficulty, a scenario and at least one
+     * alternative with a finite CO2 value.
+     *
+     * @throws IllegalArgumentException describing the first problem found
+     */
+    private static CardCatalog validate(CardCatalog catalog) {
+        List<Card> cards = catalog.getAllCards();
+        if (cards.isEmpty()) {
+            throw new IllegalArgumentException("card file has no cards");
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (Card c : cards) {
+            if (!ids.add(c.getId())) {
+                throw new IllegalArgumentException("duplicate card id " + c.getId());
+            }
+            if (c.getScenario() == null || Difficulty.fromLabel(c.getDifficulty()) == null) {
+                throw new IllegalArgumentException("card id=" + c.getId() + " lacks a scenario or valid difficulty");
+            }
+            if (c.getAlternatives() == null || c.getAlternatives().isEmpty()) {
+                throw new IllegalArgumentException("card id=" + c.getId() + " has no alternatives");
+            }
+            for (Alternative a : c.getAlternatives()) {
+                if (a.getChoice() == null || !Double.isFinite(a.getCo2())) {
+                    throw new IllegalArgumentException("card id=" + c.getId() + " has an invalid alternative");
+                }
+            }
+        }
+        return catalog;
+    }
+}
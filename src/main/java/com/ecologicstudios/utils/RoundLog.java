@@ -0,0 +1,217 @@
+package com.ecologicstudios.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * The answers given in one game: for every round the id of the card shown,
+ * the index of the chosen alternative and how long the player took.
+ * <p>
+ * Rounds are kept in parallel primitive arrays. {@link #reset(int)} sizes
+ * them for a whole game up front, so {@link #record(int, int, long)} does not
+ * allocate. For storage the log is packed into a short text by
+ * {@link #encode()}: a format version and the number of rounds, then per round
+ * the card id (zig-zag encoded), the alternative index and the response time
+ * in milliseconds, each as a variable-length integer (7 bits per byte), and
+ * the bytes in URL-safe Base64. A typical round takes 4 to 5 bytes, so a
+ * ten-round game adds about 60 characters to a history record.
+ *
+ * @author Ecologic Studios
+ * @version 1.0
+ */
+public class RoundLog {
+    /** Version of the packed format written by {@link #encode()}. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Card id of each round. */
+    private int[] cardIds;
+
+    /** Index of the chosen alternative of each round. */
+    private int[] choices;
+
+    /** Response time of each round, in milliseconds. */
+    private int[] responseMillis;
+
+    /** Number of rounds recorded. */
+    private int size;
+
+    /**
+     * Creates an empty log with room for the given number of rounds.
+     *
+     * @param capacity expected number of rounds
+     */
+    public RoundLog(int capacity) {
+        int n = Math.max(capacity, 0);
+        this.cardIds = new int[n];
+        this.choices = new int[n];
+        this.responseMillis = new int[n];
+    }
+
+    /**
+     * Forgets all rounds and makes room for {@code capacity} rounds. The arrays
+     * are only replaced if they are too small.
+     *
+     * @param capacity expected number of rounds of the next game
+     */
+    public void reset(int capacity) {
+        size = 0;
+        if (capacity > cardIds.length) {
+            cardIds = new int[capacity];
+            choices = new int[capacity];
+            responseMillis = new int[capacity];
+        }
+    }
+
+    /**
+     * Records one round. Does not allocate unless more rounds are recorded
+     * than the capacity.
+     *
+     * @param cardId         id of the card shown
+     * @param choice         index of the chosen alternative
+     * @param responseMillis time from showing the card to the answer; clamped
+     *                       to {@code [0, Integer.MAX_VALUE]}
+     */
+    public void record(int cardId, int choice, long responseMillis) {
+        if (size == cardIds.length) {
+            int n = Math.max(4, size * 2);
+            cardIds = Arrays.copyOf(cardIds, n);
+            choices = Arrays.copyOf(choices, n);
+            this.responseMillis = Arrays.copyOf(this.responseMillis, n);
+        }
+        cardIds[size] = cardId;
+        choices[size] = choice;
+        this.responseMillis[size] = (int) Math.max(0, Math.min(responseMillis, Integer.MAX_VALUE));
+        size++;
+    }
+
+    /**
+     * Returns the number of rounds recorded.
+     *
+     * @return number of rounds
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of the card shown in a round.
+     *
+     * @param round the round, from 0
+     * @return the card id
+     * @throws IndexOutOfBoundsException if the round was not recorded
+     */
+    public int getCardId(int round) {
+        return cardIds[checkRound(round)];
+    }
+
+    /**
+     * Returns the index of the alternative chosen in a round.
+     *
+     * @param round the round, from 0
+     * @return the alternative index
+     * @throws IndexOutOfBoundsException if the round was not recorded
+     */
+    public int getChoice(int round) {
+        return choices[checkRound(round)];
+    }
+
+    /**
+     * Returns how long the player took to answer in a round.
+     *
+     * @param round the round, from 0
+     * @return the response time in milliseconds
+     * @throws IndexOutOfBoundsException if the round was not recorded
+     */
+    public int getResponseMillis(int round) {
+        return responseMillis[checkRound(round)];
+    }
+
+    /**
+     * Packs the recorded rounds into a short URL-safe text.
+     *
+     * @return the packed rounds; never null
+     */
+    public String encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + size * 5);
+        writeVarint(out, FORMAT_VERSION);
+        writeVarint(out, size);
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, (cardIds[i] << 1) ^ (cardIds[i] >> 31)); // zig-zag, so negative ids stay short
+            writeVarint(out, choices[i]);
+            writeVarint(out, responseMillis[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Unpacks rounds written by {@link #encode()}.
+     *
+     * @param text the packed rounds
+     * @return the rounds
+     * @throws IllegalArgumentException if the text is not a packed round log
+     */
+    public static RoundLog decode(String text) {
+        byte[] bytes = Base64.getUrlDecoder().decode(text);
+        int[] pos = {0};
+        int version = readVarint(bytes, pos);
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported round log version " + version);
+        }
+        int n = readVarint(bytes, pos);
+        if (n < 0 || n > bytes.length) {
+            throw new IllegalArgumentException("bad round count " + n);
+        }
+        RoundLog log = new RoundLog(n);
+        for (int i = 0; i < n; i++) {
+            int zigzag = readVarint(bytes, pos);
+            log.record((zigzag >>> 1) ^ -(zigzag & 1), readVarint(bytes, pos), readVarint(bytes, pos));
+        }
+        if (pos[0] != bytes.length) {
+            throw new IllegalArgumentException("trailing bytes in round log");
+        }
+        return log;
+    }
+
+    // ------Private helper methods------
+
+    /**
+     * Checks that a round was recorded.
+     */
+    private int checkRound(int round) {
+        if (round < 0 || round >= size) {
+            throw new IndexOutOfBoundsException("round " + round + " of " + size);
+        }
+        return round;
+    }
+
+    /**
+     * Writes an int as an unsigned variable-length integer, 7 bits per byte.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer at {@code pos[0]} and advances
+     * it.
+     */
+    private static int readVarint(byte[] bytes, int[] pos) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= bytes.length) {
+                throw new IllegalArgumentException("truncated round log");
+            }
+            byte b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint too long in round log");
+    }
+}
@@ -1,30 +1,40 @@
 package com.ecologicstudios.utils;
 
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Collection;
-import java.util.List;
-import java.util.LinkedList;
 
 /**
  * The StandardDeviationCalculator class provides methods to calculate the mean,
  * variance, and standard deviation of a collection of numerical values.
- * It implements the Calculator interface for numerical data.
- * 
- * <p>This class is designed to handle numerical data efficiently and provides
- * methods to insert values, compute statistical measures, and clear stored data.</p>
- * 
+ * It implements the Calculator interface for numerical data, and the
+ * DoubleCalculator interface for primitive values that need no boxing.
+ *
+ * <p>The values are not stored. The calculator keeps a running count, mean and
+ * sum of squared deviations from the mean (Welford's algorithm), so inserting a
+ * value and every query take constant time and memory, and the results are as
+ * accurate as a two-pass computation even when the values share a large
+ * offset. Two calculators fed with different values can be combined with
+ * {@link #merge(StandardDeviationCalculator)}, e.g. to add up partial results
+ * computed separately.</p>
+ *
  * @author Ecologic Studios
  * @version 1.0
  */
-public class StandardDeviationCalculator implements Calculator<Number> {
-    private final List<Number> values;
+public class StandardDeviationCalculator implements Calculator<Number>, DoubleCalculator {
+    /** Number of values inserted. */
+    private long count;
+
+    /** Mean of the values inserted. */
+    private double mean;
+
+    /** Sum of the squared deviations of the values from {@link #mean}. */
+    private double m2;
 
     /**
-     * Constructs a new StandardDeviationCalculator with an empty list of values.
+     * Constructs a new StandardDeviationCalculator with no values.
      */
-    public StandardDeviationCalculator() {
-        this.values = new LinkedList<>();
-    }
+    public StandardDeviationCalculator() {}
 
     /**
      * Inserts a single numerical value into the calculator.
@@ -33,7 +43,20 @@ public class StandardDeviationCalculator implements Calculator<Number> {
      */
     @Override
     public void insertValue(Number value) {
-        this.values.add(value);
+        insertValue(value.doubleValue());
+    }
+
+    /**
+     * Inserts a single value into the calculator without boxing it.
+     *
+     * @param value The value to be added.
+     */
+    @Override
+    public void insertValue(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
     }
 
     /**
@@ -43,7 +66,30 @@ public class StandardDeviationCalculator implements Calculator<Number> {
      */
     @Override
     public void insertValues(Collection<? extends Number> list) {
-        this.values.addAll(list);
+        for (Number value : list) {
+            insertValue(value.doubleValue());
+        }
+    }
+
+    /**
+     * Adds the values of another calculator to this one, as if they had been
+     * inserted here. The other calculator is unchanged.
+     *
+     * @param other The calculator whose values are added.
+     */
+    public void merge(StandardDeviationCalculator other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        long n = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / n;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+        count = n;
     }
 
     /**
@@ -54,16 +100,40 @@ public class StandardDeviationCalculator implements Calculator<Number> {
      */
     @Override
     public Optional<Number> calculate() {
-        if (values.size() < 2) return Optional.empty();
+        if (count < 2) return Optional.empty();
         return Optional.of(getStandardDeviation());
     }
 
+    /**
+     * Calculates the standard deviation of the stored values without boxing
+     * it.
+     *
+     * @return An OptionalDouble containing the standard deviation, or
+     *         OptionalDouble.empty() if fewer than 2 values are present.
+     */
+    @Override
+    public OptionalDouble calculateAsDouble() {
+        if (count < 2) return OptionalDouble.empty();
+        return OptionalDouble.of(getStandardDeviation());
+    }
+
     /**
      * Clears all stored values in the calculator.
      */
     @Override
     public void clear() {
-        this.values.clear();
+        count = 0;
+        mean = 0;
+        m2 = 0;
+    }
+
+    /**
+     * Returns the number of values inserted.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
     }
 
     /**
@@ -72,11 +142,7 @@ public class StandardDeviationCalculator implements Calculator<Number> {
      * @return The mean of the stored values, or 0 if no values are present.
      */
     public double getMean() {
-        if (this.values.isEmpty()) return 0;
-        return this.values.stream()
-                .mapToDouble(Number::doubleValue)
-                .average()
-                .orElse(0);
+        return mean;
     }
 
     /**
@@ -85,16 +151,8 @@ public class StandardDeviationCalculator implements Calculator<Number> {
      * @return The variance of the stored values, or 0 if fewer than 2 values are present.
      */
     public double getVariance() {
-        int n = this.values.size();
-        if (n < 2) return 0.0;
-
-        double mean = getMean();
-        double sumSq = 0.0;
-        for (Number v : values) {
-            double d = v.doubleValue() - mean;
-            sumSq += d * d;
-        }
-        return sumSq / (n - 1);
+        if (count < 2) return 0.0;
+        return m2 / (count - 1);
     }
 
     /**
@@ -2,13 +2,63 @@ package com.ecologicstudios;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.DoubleStream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import com.ecologicstudios.utils.Alternative;
+import com.ecologicstudios.utils.BinaryCardFetcher;
+import com.ecologicstudios.utils.BulkCardImport;
 import com.ecologicstudios.utils.Calculator;
-import com.ecologicstudios.utils.StandardDeviationCalculator;
+import com.ecologicstudios.utils.Card;
+import com.ecologicstudios.utils.CardCatalog;
+import com.ecologicstudios.utils.CardJsonIO;
+import com.ecologicstudios.utils.CardJsonStream;
+import com.ecologicstudios.utils.CardPack;
+import com.ecologicstudios.utils.CardPackTool;
+import com.ecologicstudios.utils.CompactCardStore;
+import com.ecologicstudios.utils.CompositeCardFetcher;
+import com.ecologicstudios.utils.DailyRollup;
+import com.ecologicstudios.utils.DoubleCalculator;
+import com.ecologicstudios.utils.DoubleEvaluator;
+import com.ecologicstudios.utils.Evaluator;
+import com.ecologicstudios.utils.FeedbackGenerator;
+import com.ecologicstudios.utils.GameHistory;
+import com.ecologicstudios.utils.GameSession;
+import com.ecologicstudios.utils.HistoryRetention;
+import com.ecologicstudios.utils.HistoryStore;
+import com.ecologicstudios.utils.IndexedCardFetcher;
+import com.ecologicstudios.utils.JdbcHistoryStore;
+import com.ecologicstudios.utils.JsonCardFetcher;
+import com.ecologicstudios.utils.PerformanceEvaluator;
+import com.ecologicstudios.utils.QuantileSketch;
+import com.ecologicstudios.utils.ReloadingCardCatalog;
+import com.ecologicstudios.utils.RoundLog;
 import com.ecologicstudios.utils.ScoreRescaler;
+import com.ecologicstudios.utils.SketchPerformanceEvaluator;
+import com.ecologicstudios.utils.StandardDeviationCalculator;
 
 public class AppTest {
     @Test
@@ -39,4 +89,1064 @@ public class AppTest {
         assertEquals(10, ScoreRescaler.evaluate(40, 400, 0));
         assertEquals(10, ScoreRescaler.evaluate(50, 500, 0));
     }
+
+    @Test
+    public void StandardDeviationCalculator_test_streaming() { // running statistics match a two-pass computation
+        Random random = new Random(42);
+        double[] values = new double[1000];
+        StandardDeviationCalculator all = new StandardDeviationCalculator();
+        StandardDeviationCalculator first = new StandardDeviationCalculator();
+        StandardDeviationCalculator second = new StandardDeviationCalculator();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1e9 + random.nextGaussian() * 3; // a large offset breaks the naive sum-of-squares formula
+            all.insertValue(values[i]);
+            (i < 300 ? first : second).insertValue(values[i]);
+        }
+        double mean = Arrays.stream(values).average().orElseThrow();
+        double sumSq = Arrays.stream(values).map(v -> (v - mean) * (v - mean)).sum();
+        assertEquals(1000, all.getCount());
+        assertEquals(mean, all.getMean(), 1e-6);
+        assertEquals(sumSq / 999, all.getVariance(), 1e-6);
+
+        first.merge(second);
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getMean(), first.getMean(), 1e-6);
+        assertEquals(all.getStandardDeviation(), first.getStandardDeviation(), 1e-6);
+
+        StandardDeviationCalculator boxed = new StandardDeviationCalculator();
+        assertTrue(boxed.calculate().isEmpty());
+        boxed.insertValues(List.of(2, 4, 4, 4, 5, 5, 7, 9));
+        assertEquals(5.0, boxed.getMean(), 1e-12);
+        assertEquals(Math.sqrt(32.0 / 7), boxed.calculate().orElseThrow().doubleValue(), 1e-12);
+        boxed.clear();
+        assertEquals(0.0, boxed.getVariance());
+    }
+
+    @Test
+    public void PerformanceEvaluator_test_incremental() { // baseline = all but the latest value
+        PerformanceEvaluator evaluator = new PerformanceEvaluator();
+        evaluator.insertValues(List.of(50, 50));
+        assertTrue(evaluator.evaluate().isEmpty());
+        evaluator.insertValue(50);
+        assertEquals(50.0, evaluator.evaluate().orElseThrow().doubleValue()); // zero SD, latest == mean
+        evaluator.insertValue(60);
+        assertEquals(100.0, evaluator.evaluate().orElseThrow().doubleValue()); // zero SD, latest > mean
+
+        evaluator.clear();
+        evaluator.insertValues(List.of(40, 60, 50));
+        assertEquals(50.0, evaluator.evaluate().orElseThrow().doubleValue(), 1e-6); // z = 0
+        evaluator.insertValue(60); // one sample SD of {40, 60, 50} above their mean
+        assertEquals(84.13, evaluator.evaluate().orElseThrow().doubleValue(), 0.01);
+
+        // evaluating after every insert gives the same result as a fresh evaluator over the prefix
+        Random random = new Random(7);
+        List<Double> values = new ArrayList<>();
+        PerformanceEvaluator running = new PerformanceEvaluator();
+        for (int i = 0; i < 50; i++) {
+            double v = random.nextDouble() * 100;
+            values.add(v);
+            running.insertValue(v);
+            PerformanceEvaluator fresh = new PerformanceEvaluator();
+            fresh.insertValues(values);
+            assertEquals(fresh.evaluate().map(Number::doubleValue), running.evaluate().map(Number::doubleValue));
+        }
+    }
+
+    @Test
+    public void DoubleCalculator_test_primitive_and_adapters() { // same results with and without boxing
+        double[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+        StandardDeviationCalculator fromArray = new StandardDeviationCalculator();
+        fromArray.insertValues(values);
+        StandardDeviationCalculator fromStream = new StandardDeviationCalculator();
+        fromStream.insertValues(DoubleStream.of(values));
+        assertEquals(Math.sqrt(32.0 / 7), fromArray.calculateAsDouble().getAsDouble(), 1e-12);
+        assertEquals(fromArray.calculateAsDouble(), fromStream.calculateAsDouble());
+
+        Calculator<Number> boxed = DoubleCalculator.boxed(new StandardDeviationCalculator());
+        boxed.insertValues(List.of(2, 4, 4, 4, 5, 5, 7, 9));
+        assertEquals(fromArray.calculateAsDouble().getAsDouble(), boxed.calculate().orElseThrow().doubleValue());
+        DoubleCalculator unboxed = DoubleCalculator.of(new StandardDeviationCalculator());
+        unboxed.insertValue(1);
+        assertTrue(unboxed.calculateAsDouble().isEmpty());
+        unboxed.insertValues(values);
+        assertTrue(unboxed.calculateAsDouble().isPresent());
+
+        PerformanceEvaluator evaluator = new PerformanceEvaluator();
+        evaluator.insertValues(new double[] {40, 60});
+        assertTrue(evaluator.evaluateAsDouble().isEmpty());
+        evaluator.insertValue(60);
+        assertEquals(evaluator.evaluate().orElseThrow().doubleValue(), evaluator.evaluateAsDouble().getAsDouble());
+        Evaluator<Number> boxedEvaluator = DoubleEvaluator.boxed(evaluator);
+        assertEquals(evaluator.evaluateAsDouble().getAsDouble(), boxedEvaluator.evaluate().orElseThrow().doubleValue());
+        DoubleEvaluator unboxedEvaluator = DoubleEvaluator.of(boxedEvaluator);
+        unboxedEvaluator.clear();
+        assertTrue(unboxedEvaluator.evaluateAsDouble().isEmpty());
+    }
+
+    @Test
+    public void QuantileSketch_test_accuracy() { // skewed data, bounded memory, merge and serialization
+        Random random = new Random(11);
+        int n = 100_000;
+        double[] values = new double[n];
+        QuantileSketch sketch = new QuantileSketch();
+        QuantileSketch firstHalf = new QuantileSketch();
+        QuantileSketch secondHalf = new QuantileSketch();
+        for (int i = 0; i < n; i++) {
+            values[i] = Math.exp(random.nextGaussian() * 1.5); // log-normal: heavily skewed
+            sketch.update(values[i]);
+            (i < n / 2 ? firstHalf : secondHalf).update(values[i]);
+        }
+        firstHalf.merge(secondHalf);
+        QuantileSketch restored = QuantileSketch.fromBytes(sketch.toBytes());
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        assertEquals(n, sketch.getN());
+        assertTrue(sketch.getRetainedItems() < 1000, "kept " + sketch.getRetainedItems());
+        for (double q : new double[] {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            double x = sorted[(int) (q * n)];
+            assertEquals(q, sketch.rank(x), 0.02, "rank at " + q);
+            assertEquals(q, firstHalf.rank(x), 0.02, "merged rank at " + q);
+            assertEquals(sketch.rank(x), restored.rank(x));
+            double estimate = sketch.quantile(q);
+            assertEquals(q, (double) Arrays.binarySearch(sorted, estimate) / n, 0.02, "quantile " + q);
+        }
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(new byte[] {1, 2, 3}));
+    }
+
+    @Test
+    public void SketchPerformanceEvaluator_test_empirical_rank(@TempDir Path dir) throws IOException {
+        SketchPerformanceEvaluator evaluator = new SketchPerformanceEvaluator();
+        evaluator.insertValues(new double[] {50, 50});
+        assertTrue(evaluator.evaluateAsDouble().isEmpty());
+        evaluator.insertValue(50);
+        assertEquals(50.0, evaluator.evaluateAsDouble().getAsDouble()); // ties count as half
+        evaluator.insertValue(60);
+        assertEquals(100.0, evaluator.evaluate().orElseThrow().doubleValue());
+
+        // a skewed history: nine poor games and one great one; a game just above the poor ones
+        // beats 90% of them, while the normal approximation ranks it below average
+        double[] games = {10, 10, 10, 10, 10, 10, 10, 10, 10, 100, 12};
+        evaluator.clear();
+        evaluator.insertValues(games);
+        PerformanceEvaluator normal = new PerformanceEvaluator();
+        normal.insertValues(games);
+        assertEquals(90.0, evaluator.evaluateAsDouble().getAsDouble(), 1e-9);
+        assertEquals(40.3, normal.evaluateAsDouble().getAsDouble(), 0.1);
+
+        Path file = dir.resolve("history.jsonl.sketch");
+        assertNull(SketchPerformanceEvaluator.load(file));
+        evaluator.save(file);
+        SketchPerformanceEvaluator.record(file, 5);
+        SketchPerformanceEvaluator loaded = SketchPerformanceEvaluator.load(file);
+        assertEquals(games.length + 1, loaded.getCount());
+        assertEquals(0.0, loaded.evaluateAsDouble().getAsDouble()); // 5 is below every earlier game
+        Files.write(file, new byte[] {9});
+        assertNull(SketchPerformanceEvaluator.load(file)); // unreadable files are moved aside, not overwritten
+        assertArrayEquals(new byte[] {9}, Files.readAllBytes(dir.resolve("history.jsonl.sketch.bad")));
+        Files.write(file, new byte[] {8});
+        assertEquals(1, SketchPerformanceEvaluator.record(file, 5).getCount());
+        assertArrayEquals(new byte[] {8}, Files.readAllBytes(dir.resolve("history.jsonl.sketch.bad")));
+    }
+
+    @Test
+    public void CardJsonStream_test_both_layouts() throws IOException {
+        String card = "{\"id\": 7, \"scenario\": \"s\", \"extra\": [1, 2], \"difficulty\": \"Hard\","
+                + " \"alternatives\": [{\"choice\": \"a\", \"co2\": 0.5}, {\"choice\": \"b\", \"co2\": 2}]}";
+        List<Card> wrapped = CardJsonStream.read(new StringReader("{\"cards\": [" + card + "]}"));
+        List<Card> array = CardJsonStream.read(new StringReader("[" + card + "]"));
+
+        for (List<Card> cards : List.of(wrapped, array)) {
+            assertEquals(1, cards.size());
+            assertEquals(7, cards.get(0).getId());
+            assertEquals("Hard", cards.get(0).getDifficulty());
+            assertEquals(0.5, cards.get(0).getAlternatives().get(0).getCo2());
+            assertEquals("b", cards.get(0).getAlternatives().get(1).getChoice());
+        }
+    }
+
+    @Test
+    public void JsonCardFetcher_test_game_cards() { // bundled deck from disk and classpath
+        JsonCardFetcher fromFile = new JsonCardFetcher("src/main/resources/json/cards.json");
+        JsonCardFetcher fromClasspath = new JsonCardFetcher("json/cards.json");
+        assertEquals(60, fromFile.getAllCards().size());
+        assertEquals(20, fromFile.getCardsByDifficulty("medium").size());
+        assertEquals(fromFile.getAllCards().size(), fromClasspath.getAllCards().size());
+    }
+
+    @Test
+    public void CardCatalog_test_shared_decks() {
+        CardCatalog catalog = CardCatalog.shared("src/main/resources/json/cards.json");
+        assertSame(catalog, CardCatalog.shared("src/main/resources/json/cards.json"));
+        assertThrows(UnsupportedOperationException.class, () -> catalog.getAllCards().clear());
+
+        List<Card> first = catalog.newDeck("Easy");
+        List<Card> second = catalog.newDeck("Easy");
+        first.remove(0);
+        assertEquals(20, second.size());
+        assertEquals(60, catalog.getCardCount());
+        assertTrue(catalog.getFootprintBytes() > 0);
+    }
+
+    @Test
+    public void IndexedCardFetcher_test_matches_linear_scan() {
+        JsonCardFetcher linear = new JsonCardFetcher("src/main/resources/json/cards.json");
+        IndexedCardFetcher indexed = new IndexedCardFetcher(linear.getAllCards());
+
+        for (String difficulty : List.of("Easy", "MEDIUM", " hard ", "unknown")) {
+            assertEquals(linear.getCardsByDifficulty(difficulty.trim()), indexed.getCardsByDifficulty(difficulty));
+        }
+        for (Card c : linear.getAllCards()) {
+            assertSame(c, indexed.getCardById(c.getId()));
+            assertSame(linear.getCardById(c.getId()), indexed.getCardById(c.getId()));
+        }
+        assertNull(indexed.getCardById(-1));
+        assertThrows(UnsupportedOperationException.class, () -> indexed.getCardsByDifficulty("Easy").remove(0));
+    }
+
+    @Test
+    public void CardFetcher_test_duplicate_id_first_wins(@TempDir Path dir) throws IOException {
+        List<Card> cards = List.of(new Card(7, "First", "Easy", List.of(new Alternative("a", 1.0))),
+                new Card(7, "Second", "Hard", List.of(new Alternative("b", 2.0))));
+        assertEquals("First", new IndexedCardFetcher(cards).getCardById(7).getScenario());
+        assertEquals("First", new CompactCardStore(cards).getCardById(7).getScenario());
+        Files.writeString(dir.resolve("pack.json"), "[{\"id\": 7, \"scenario\": \"First\", \"difficulty\": \"Easy\", "
+                + "\"alternatives\": [{\"choice\": \"a\", \"co2\": 1}]}, {\"id\": 7, \"scenario\": \"Second\", "
+                + "\"difficulty\": \"Hard\", \"alternatives\": [{\"choice\": \"b\", \"co2\": 2}]}]");
+        assertEquals("First", new CompositeCardFetcher(dir.toString()).getCardById(7).getScenario());
+        assertEquals("First", new JsonCardFetcher(dir.resolve("pack.json").toString()).getCardById(7).getScenario());
+    }
+
+    @Test
+    public void CardPack_test_round_trip(@TempDir Path dir) throws IOException {
+        Path pack = dir.resolve("cards.pack");
+        List<Card> cards = CardJsonStream.read("src/main/resources/json/cards.json");
+        CardPack.write(pack, cards);
+
+        BinaryCardFetcher binary = new BinaryCardFetcher(pack.toString());
+        assertEquals(List.of(), CardPackTool.verify(new IndexedCardFetcher(cards), binary));
+        assertNull(binary.getCardById(-1));
+    }
+
+    @Test
+    public void ReloadingCardCatalog_test_swap_and_reject(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("cards.json");
+        String card = "{\"id\": %d, \"scenario\": \"s\", \"difficulty\": \"Easy\", \"alternatives\": [{\"choice\": \"a\", \"co2\": 1}]}";
+        Files.writeString(file, "[" + String.format(card, 1) + "]");
+
+        ReloadingCardCatalog source = new ReloadingCardCatalog(file.toString());
+        List<Card> deck = source.current().newDeck("Easy");
+        assertFalse(source.reloadIfChanged()); // untouched file is not re-parsed
+
+        Files.writeString(file, "[" + String.format(card, 1) + ", " + String.format(card, 2) + "]");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        assertTrue(source.reloadIfChanged());
+        assertEquals(2, source.current().getCardCount());
+        assertEquals(1, deck.size()); // the dealt deck is unaffected
+
+        Files.writeString(file, "[" + String.format(card, 3) + ", " + String.format(card, 3) + "]"); // duplicate ids
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        assertFalse(source.reloadIfChanged());
+        assertEquals(1, source.getFailedReloadCount());
+        assertEquals(1, source.getReloadCount());
+        assertNotNull(source.current().getCardById(2));
+    }
+
+    @Test
+    public void CardJsonIO_test_journal_and_compact(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("cards.json");
+        String card = "{\"id\": %d, \"scenario\": \"s\", \"difficulty\": \"Easy\", \"alternatives\": [{\"choice\": \"a\", \"co2\": 1}]}";
+        Files.writeString(file, "{\"cards\": [" + String.format(card, 2) + ", " + String.format(card, 1) + "]}");
+        String base = Files.readString(file);
+
+        CardJsonIO.upsert(file, new Card(1, "updated", "Hard", List.of(new Alternative("b", 2.5))));
+        CardJsonIO.upsert(file, new Card(5, "new", "Easy", List.of(new Alternative("c", 3))));
+        assertEquals(base, Files.readString(file)); // base file untouched by upserts
+
+        List<Card> merged = new JsonCardFetcher(file.toString()).getAllCards();
+        assertEquals(List.of(1, 2, 5), merged.stream().map(Card::getId).toList());
+        assertEquals("updated", merged.get(0).getScenario());
+        assertEquals(2.5, merged.get(0).getAlternatives().get(0).getCo2());
+
+        assertEquals(3, CardJsonIO.compact(file));
+        assertFalse(Files.exists(CardJsonIO.journalOf(file)));
+        assertTrue(Files.readString(file).trim().startsWith("{")); // layout kept
+        try (var siblings = Files.list(file.getParent())) {
+            Path lock = CardJsonIO.journalOf(file).resolveSibling("cards.json.journal.lock");
+            assertEquals(List.of(file), siblings.filter(p -> !p.equals(lock)).toList()); // no temp file left behind
+        }
+        assertEquals(List.of(1, 2, 5), CardJsonIO.load(file).stream().map(Card::getId).toList());
+
+        Files.writeString(CardJsonIO.journalOf(file), "{\"id\": 9, \"scen"); // torn write
+        CardJsonIO.upsert(file, new Card(6, "after crash", "Easy", List.of(new Alternative("d", 4))));
+        assertEquals(List.of(1, 2, 5, 6), CardJsonIO.load(file).stream().map(Card::getId).toList());
+    }
+
+    @Test
+    public void BulkCardImport_test_csv_and_jsonl(@TempDir Path dir) throws IOException {
+        Path target = dir.resolve("cards.json");
+        Path csv = dir.resolve("cards.csv");
+        Files.writeString(target, "{\"cards\": []}");
+        Files.writeString(csv, String.join("\n",
+                "id,scenario,difficulty,choices",
+                "1,\"Lunch, at work\",easy,Salad:0.5,\"Burger: large:3.25\"",
+                "2,Commute,Hard,Bike:0",
+                "3,Broken,Impossible,Bike:0",
+                "x,Bad id,Easy,Bike:0",
+                "4,No value,Easy,Bike:"));
+
+        BulkCardImport.Report report = new BulkCardImport().run(target, csv);
+        assertEquals(2, report.accepted());
+        assertEquals(3, report.rejected());
+        assertTrue(report.rejects().get(0).startsWith("line 4:"));
+
+        Path jsonl = dir.resolve("cards.jsonl");
+        Files.writeString(jsonl, "{\"id\": 2, \"scenario\": \"Commute v2\", \"difficulty\": \"Hard\", "
+                + "\"alternatives\": [{\"choice\": \"Bus\", \"co2\": 1}]}\n{not json\n");
+        report = new BulkCardImport().run(target, jsonl);
+        assertEquals(1, report.accepted());
+        assertEquals(1, report.rejected());
+
+        List<Card> cards = CardJsonIO.load(target);
+        assertEquals(2, cards.size());
+        assertEquals("Easy", cards.get(0).getDifficulty());
+        assertEquals("Burger: large", cards.get(0).getAlternatives().get(1).getChoice());
+        assertEquals("Commute v2", cards.get(1).getScenario());
+        assertFalse(Files.exists(CardJsonIO.journalOf(target)));
+    }
+
+    @Test
+    public void CompactCardStore_test_same_cards() {
+        JsonCardFetcher reference = new JsonCardFetcher("src/main/resources/json/cards.json");
+        CompactCardStore compact = new CompactCardStore("src/main/resources/json/cards.json");
+        assertEquals(List.of(), CardPackTool.verify(new IndexedCardFetcher(reference.getAllCards()), compact));
+
+        Card card = compact.getAllCards().get(0);
+        assertEquals(card.getAlternatives().get(0), compact.getAllCards().get(0).getAlternatives().get(0));
+    }
+
+    @Test
+    public void CompactCardStore_test_footprint_estimate() { // estimated layouts at 100k cards, not measured heap
+        String[] difficulties = {"Easy", "Medium", "Hard"};
+        List<Card> cards = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            cards.add(new Card(i, "Scenario " + i, difficulties[i % 3],
+                    List.of(new Alternative("Walk", 0.0), new Alternative("Drive", i * 0.01))));
+        }
+        long objects = CardCatalog.of(cards).getFootprintBytes();
+        long compact = new CompactCardStore(cards).getFootprintBytes();
+        assertTrue(compact * 2 < objects, compact + " vs " + objects);
+    }
+
+    @Test
+    public void FeedbackGenerator_test_precomputed_bounds() {
+        List<Card> deck = new ArrayList<>(List.of(
+                new Card(1, "A", "Easy", List.of(new Alternative("x", 2.0), new Alternative("y", 6.0))),
+                new Card(2, "B", "Easy", List.of(new Alternative("x", 5.0), new Alternative("y", 1.0),
+                        new Alternative("z", 3.0))),
+                new Card(3, "C", "Easy", List.of(new Alternative("x", 4.0)))));
+        assertEquals(1.0, deck.get(1).getMinCo2());
+        assertEquals(5.0, deck.get(1).getMaxCo2());
+        assertEquals(3.0, deck.get(1).getMeanCo2());
+
+        FeedbackGenerator feedback = new FeedbackGenerator(deck, 2);
+        deck.remove(0); // dealing a card does not change the round's bounds
+        assertEquals(3.0, feedback.getMinResult());
+        assertEquals(11.0, feedback.getMaxResult());
+        assertEquals(5.0, new FeedbackGenerator(deck, 10).getMinResult()); // clamped to the deck size
+
+        Card view = new CompactCardStore(List.of(new Card(2, "B", "Easy", List.of(new Alternative("x", 5.0),
+                new Alternative("y", 1.0))))).getCardById(2);
+        assertEquals(1.0, view.getMinCo2());
+        assertEquals(5.0, view.getMaxCo2());
+    }
+
+    @Test
+    public void CompositeCardFetcher_test_merge_order(@TempDir Path dir) throws IOException {
+        Files.writeString(dir.resolve("b-winter.json"), "[{\"id\": 2, \"scenario\": \"Winter\", \"difficulty\": \"Hard\", "
+                + "\"alternatives\": [{\"choice\": \"Heat\", \"co2\": 3}]}]");
+        Files.writeString(dir.resolve("a-base.json"), "{\"cards\": [{\"id\": 1, \"scenario\": \"Base\", \"difficulty\": \"Easy\", "
+                + "\"alternatives\": [{\"choice\": \"Walk\", \"co2\": 0}]}, {\"id\": 2, \"scenario\": \"Old\", "
+                + "\"difficulty\": \"Easy\", \"alternatives\": [{\"choice\": \"Car\", \"co2\": 5}]}]}");
+        Files.writeString(dir.resolve("c-broken.json"), "{not json");
+        Files.writeString(dir.resolve("notes.txt"), "ignored");
+
+        CompositeCardFetcher fetcher = new CompositeCardFetcher(dir.toString());
+        assertEquals(List.of(1, 2), fetcher.getAllCards().stream().map(Card::getId).toList());
+        assertEquals("Winter", fetcher.getCardById(2).getScenario()); // later pack wins
+        assertEquals(1, fetcher.getCardsByDifficulty("Hard").size());
+        assertEquals(1, fetcher.getConflictCount());
+        assertEquals(3, fetcher.getPackStats().size());
+        assertEquals(2, fetcher.getPackStats().get(0).cards());
+        assertNotNull(fetcher.getPackStats().get(2).error());
+    }
+
+    @Test
+    public void GameHistory_test_corrupt_legacy_not_migrated(@TempDir Path dir) throws IOException {
+        Path legacy = dir.resolve("history.json");
+        Files.writeString(legacy, "{\"gameSessions\": [{\"sessionId\": 1, \"diffic"); // torn write
+        try (GameHistory history = new GameHistory(dir.resolve("history.jsonl").toString(), legacy.toString())) {
+            assertEquals(0, history.getSessionCount());
+        }
+        assertTrue(Files.exists(legacy)); // kept for recovery, not renamed away as migrated
+        assertFalse(Files.exists(dir.resolve("history.json.migrated")));
+    }
+
+    @Test
+    public void GameHistory_test_json_lines_migration(@TempDir Path dir) throws IOException {
+        String legacy = dir.resolve("history.json").toString();
+        try (GameHistory old = new GameHistory(legacy)) {
+            old.addSession(new GameSession("Easy", 10, 20.0, 5.0, 40.0));
+            old.addSession(new GameSession("Hard", 10, 30.0, 6.0, 50.0));
+        }
+
+        String jsonl = dir.resolve("history.jsonl").toString();
+        try (GameHistory history = new GameHistory(jsonl, legacy)) {
+            assertEquals(2, history.getSessionCount());
+            assertFalse(Files.exists(Path.of(legacy)));
+            assertEquals(3, history.addSession(new GameSession("Medium", 5, 10.0, 1.0, 20.0)));
+            assertTrue(history.removeSession(1));
+            assertFalse(history.removeSession(1));
+            assertEquals(4, history.addSession(new GameSession("Easy", 5, 12.0, 1.0, 20.0)));
+            assertTrue(history.removeSession(4));
+        }
+
+        Files.writeString(Path.of(jsonl), "{\"sessionId\": 9, \"diffic", StandardOpenOption.APPEND); // torn write
+        try (GameHistory reopened = new GameHistory(jsonl, legacy)) {
+            assertEquals(List.of(2, 3), reopened.getAllSessions().stream().map(GameSession::getSessionId).toList());
+            assertEquals("Hard", reopened.getSession(2).getDifficulty());
+            assertNull(reopened.getSession(1));
+            assertEquals(5, reopened.addSession(new GameSession("Hard", 5, 12.0, 1.0, 20.0))); // ids are not reused
+            assertTrue(reopened.flush());
+            assertEquals(0, reopened.getQueueDepth());
+            try (GameHistory other = new GameHistory(jsonl)) {
+                assertEquals(5, other.getSession(5).getSessionId());
+            }
+
+            String header = Files.readAllLines(Path.of(jsonl)).get(0);
+            reopened.clearHistory();
+            assertEquals(0, reopened.getSessionCount());
+            assertEquals(1, reopened.addSession(new GameSession("Easy", 5, 12.0, 1.0, 20.0)));
+            assertTrue(reopened.flush());
+            // a replaced file gets a new generation, which identifies it where file keys are missing
+            assertNotEquals(header, Files.readAllLines(Path.of(jsonl)).get(0));
+        }
+        try (GameHistory cleared = new GameHistory(jsonl)) {
+            assertEquals(1, cleared.getSessionCount());
+        }
+    }
+
+    @Test
+    public void GameHistory_test_compact_format_upgrade(@TempDir Path dir) throws IOException {
+        Path jsonl = dir.resolve("history.jsonl");
+        Files.writeString(jsonl, String.join("\n",
+                "{\"sessionId\":1,\"timestamp\":\"2024-03-01 12:30:00\",\"difficulty\":\"Easy\",\"totalRounds\":10,"
+                        + "\"totalScore\":20.5,\"bestScore\":5.0,\"worstScore\":40.0}",
+                "{\"sessionId\":2,\"timestamp\":\"2024-03-02 08:00:00\",\"difficulty\":\"nightmare\",\"totalRounds\":3,"
+                        + "\"totalScore\":1.0,\"bestScore\":0.5,\"worstScore\":2.0}",
+                "{\"sessionId\":3,\"timestamp\":null,\"difficulty\":\"Hard\",\"totalRounds\":1,"
+                        + "\"totalScore\":1.0,\"bestScore\":0.5,\"worstScore\":2.0}",
+                "{\"removed\":3}", ""));
+        long oldSize = Files.size(jsonl);
+
+        GameHistory history = new GameHistory(jsonl.toString());
+        List<String> lines = Files.readAllLines(jsonl);
+        assertTrue(lines.get(0).matches("\\{\"version\":2,\"generation\":\\d+}"), lines.get(0));
+        assertTrue(lines.get(1).startsWith("[1,"), lines.get(1));
+        assertTrue(Files.size(jsonl) < oldSize);
+
+        GameSession first = history.getSession(1);
+        assertEquals("2024-03-01 12:30:00", first.getTimestamp());
+        assertEquals("Easy", first.getDifficulty());
+        assertEquals(20.5, first.getTotalScore());
+        assertEquals("nightmare", history.getSession(2).getDifficulty()); // unknown labels are kept as text
+        assertEquals(4, history.addSession(new GameSession("Medium", 5, 10.0, 1.0, 20.0))); // 3 stays used
+        history.close();
+
+        try (GameHistory reopened = new GameHistory(jsonl.toString())) {
+            assertEquals(List.of(1, 2, 4), reopened.getAllSessions().stream().map(GameSession::getSessionId).toList());
+            assertEquals(history.getSession(4).getEpochMillis(), reopened.getSession(4).getEpochMillis());
+            assertEquals("Medium", reopened.getSession(4).getDifficulty());
+        }
+        assertEquals(1, Files.readAllLines(jsonl).stream().filter(l -> l.startsWith("{\"version\"")).count());
+    }
+
+    @Test
+    public void RoundLog_test_round_trip(@TempDir Path dir) throws IOException {
+        RoundLog log = new RoundLog(2);
+        log.record(7, 2, 1830);
+        log.record(-3, 0, 12);
+        log.record(300_000, 1, Long.MAX_VALUE); // grows past the capacity, clamps the time
+        RoundLog decoded = RoundLog.decode(log.encode());
+        assertEquals(3, decoded.size());
+        assertEquals(-3, decoded.getCardId(1));
+        assertEquals(300_000, decoded.getCardId(2));
+        assertEquals(2, decoded.getChoice(0));
+        assertEquals(1830, decoded.getResponseMillis(0));
+        assertEquals(Integer.MAX_VALUE, decoded.getResponseMillis(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> decoded.getCardId(3));
+        assertThrows(IllegalArgumentException.class, () -> RoundLog.decode("AQ")); // truncated
+
+        log.reset(10);
+        assertEquals(0, log.size());
+        for (int i = 0; i < 10; i++) {
+            log.record(i, i % 4, 2000 + i);
+        }
+        assertTrue(log.encode().length() < 70, log.encode());
+        for (String name : List.of("history.json", "history.jsonl")) {
+            String path = dir.resolve(name).toString();
+            int id;
+            int old;
+            try (GameHistory history = new GameHistory(path)) {
+                id = history.addSession(new GameSession("Hard", 10, 20.0, 5.0, 40.0, log));
+                old = history.addSession(new GameSession("Hard", 10, 20.0, 5.0, 40.0));
+            }
+
+            try (GameHistory reopened = new GameHistory(path)) {
+                RoundLog stored = reopened.getSession(id).getRoundLog();
+                assertEquals(10, stored.size(), name);
+                assertEquals(9, stored.getCardId(9), name);
+                assertEquals(1, stored.getChoice(9), name);
+                assertEquals(2009, stored.getResponseMillis(9), name);
+                assertNull(reopened.getSession(old).getRoundLog(), name);
+            }
+        }
+    }
+
+    @Test
+    public void GameHistory_test_write_behind(@TempDir Path dir) throws IOException {
+        for (String name : List.of("history.json", "history.jsonl")) {
+            String path = dir.resolve(name).toString();
+            GameHistory history = new GameHistory(path);
+            for (int i = 0; i < 200; i++) {
+                history.addSession(new GameSession("Easy", 10, i, 1.0, 2.0));
+            }
+            assertEquals(200, history.getSessionCount()); // served from memory
+            assertTrue(history.flush());
+            assertTrue(history.getFlushCount() < 200, name + ": " + history.getFlushCount()); // bursts are coalesced
+            history.close();
+            assertThrows(IllegalStateException.class, () -> history.removeSession(7)); // the store is closed
+            assertThrows(IllegalStateException.class, () -> history.addSession(new GameSession("Easy", 1, 1.0, 1.0, 2.0)));
+            assertEquals(200, history.getSessionCount()); // reads still work
+
+            try (GameHistory reopened = new GameHistory(path)) {
+                assertEquals(200, reopened.getSessionCount());
+                assertEquals(150.0, reopened.getSession(151).getTotalScore());
+            }
+        }
+    }
+
+    @Test
+    public void GameHistory_test_persistent_id_sequence(@TempDir Path dir) throws IOException {
+        String path = dir.resolve("history.json").toString();
+        try (GameHistory history = new GameHistory(path)) {
+            for (int i = 0; i < 3; i++) {
+                history.addSession(new GameSession("Easy", 10, i, 1.0, 2.0));
+            }
+            assertTrue(history.removeSession(3));
+        }
+        assertTrue(Files.exists(Path.of(path + ".seq")));
+
+        try (GameHistory reopened = new GameHistory(path)) { // the JSON document no longer contains id 3
+            assertEquals(4, reopened.addSession(new GameSession("Hard", 10, 9, 1.0, 2.0)));
+            reopened.clearHistory();
+        }
+        try (GameHistory cleared = new GameHistory(path)) {
+            assertEquals(1, cleared.addSession(new GameSession("Hard", 10, 9, 1.0, 2.0)));
+        }
+    }
+
+    @Test
+    public void GameHistory_test_killed_writer(@TempDir Path dir) throws Exception {
+        for (String name : List.of("history.json", "history.jsonl")) {
+            String path = dir.resolve(name).toString();
+            try (GameHistory seed = new GameHistory(path)) { // a larger file makes a kill during the rewrite likely
+                for (int i = 0; i < 2000; i++) {
+                    seed.addSession(new GameSession("Easy", 10, i, 1.0, 2.0));
+                }
+            }
+
+            Process writer = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"), HistoryWriterProcess.class.getName(), path)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            List<Integer> acknowledged = new ArrayList<>();
+            try (BufferedReader out = new BufferedReader(
+                    new InputStreamReader(writer.getInputStream()))) {
+                String line;
+                while (acknowledged.size() < 40 && (line = out.readLine()) != null) {
+                    acknowledged.add(Integer.parseInt(line));
+                }
+                writer.destroyForcibly(); // the writer is busy committing the next session
+                writer.waitFor();
+            }
+            assertEquals(40, acknowledged.size());
+
+            try (GameHistory recovered = new GameHistory(path)) {
+                assertTrue(recovered.getSessionCount() >= 2040, name + ": " + recovered.getSessionCount());
+                for (int id : acknowledged) {
+                    assertNotNull(recovered.getSession(id), name + ": lost session " + id);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void GameHistory_test_paged_reads(@TempDir Path dir) throws Exception {
+        try (GameHistory history = new GameHistory(dir.resolve("history.jsonl").toString())) {
+            for (int i = 1; i <= 25; i++) {
+                history.addSession(new GameSession(i % 2 == 0 ? "Hard" : "Easy", 10, i, 1.0, 2.0));
+            }
+
+            List<Integer> ids = new ArrayList<>();
+            int cursor = 0;
+            int pages = 0;
+            do {
+                GameHistory.Page page = history.getPage(cursor, 10, null);
+                assertTrue(page.sessions().size() <= 10);
+                page.sessions().forEach(s -> ids.add(s.getSessionId()));
+                cursor = page.nextCursor();
+                pages++;
+            } while (cursor > 0);
+            assertEquals(3, pages);
+            assertEquals(25, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                assertEquals(25 - i, ids.get(i)); // newest first, no gaps or repeats
+            }
+
+            GameHistory.Page hard = history.getPage(0, 5, "hard");
+            assertEquals(List.of(24, 22, 20, 18, 16), hard.sessions().stream().map(GameSession::getSessionId).toList());
+            assertTrue(hard.hasMore());
+            GameHistory.Page rest = history.getPage(hard.nextCursor(), 100, "HARD");
+            assertEquals(7, rest.sessions().size());
+            assertFalse(rest.hasMore());
+            assertTrue(history.getPage(0, 10, "Medium").sessions().isEmpty());
+        }
+    }
+
+    @Test
+    public void GameHistory_test_time_and_difficulty_queries(@TempDir Path dir) throws Exception {
+        try (GameHistory history = new GameHistory(dir.resolve("history.jsonl").toString())) {
+            long day = 24L * 60 * 60 * 1000;
+            long now = 100 * day;
+            String[] difficulties = {"Easy", "Medium", "Hard"};
+            for (int i = 0; i < 30; i++) { // one session per day, days 70..99
+                history.addSession(new GameSession(0, now - (30 - i) * day, difficulties[i % 3], 10, i, 1.0, 2.0,
+                        null));
+            }
+
+            List<GameSession> hardLastWeek = history.findSessions("hard", now - 7 * day, now);
+            assertEquals(List.of(93L, 96L, 99L), hardLastWeek.stream().map(s -> s.getEpochMillis() / day).toList());
+            assertEquals(7, history.findSessions(null, now - 7 * day, now).size());
+            assertEquals(1, history.findSessions(null, 99 * day, 99 * day + 1).size()); // start inclusive
+            assertEquals(0, history.findSessions(null, 98 * day + 1, 99 * day).size()); // end exclusive
+            assertTrue(history.findSessions("Nightmare", 0, now).isEmpty());
+
+            // the indexes follow removals, clears and additions
+            assertTrue(history.removeSession(hardLastWeek.get(1).getSessionId()));
+            assertEquals(2, history.findSessions("Hard", now - 7 * day, now).size());
+            history.addSession(new GameSession(0, now - day / 2, "Hard", 10, 1, 1.0, 2.0, null));
+            assertEquals(3, history.findSessions("HARD", now - 7 * day, now).size());
+            history.clearHistory();
+            assertTrue(history.findSessions(null, 0, Long.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    public void GameHistory_test_custom_store() {
+        List<List<HistoryStore.Change>> batches = new ArrayList<>();
+        boolean[] closed = {false};
+        HistoryStore store = new HistoryStore() {
+            @Override
+            public List<GameSession> readAll() {
+                return List.of(new GameSession(41, 1000, "Easy", 10, 1.0, 1.0, 2.0, null));
+            }
+
+            @Override
+            public void write(List<HistoryStore.Change> changes) {
+                batches.add(List.copyOf(changes));
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        GameHistory history = new GameHistory(store);
+        assertEquals(1, history.getSessionCount());
+        assertEquals(42, history.addSession(new GameSession("Hard", 10, 1.0, 1.0, 2.0))); // default ids: floor + 1
+        assertTrue(history.removeSession(41));
+        history.close();
+        assertTrue(closed[0]);
+        assertEquals(List.of(HistoryStore.Change.Kind.ADD, HistoryStore.Change.Kind.REMOVE),
+                batches.stream().flatMap(List::stream).map(HistoryStore.Change::kind).toList());
+    }
+
+    @Test
+    public void GameHistory_test_clear_during_write() throws Exception {
+        GatedHistoryStore store = new GatedHistoryStore();
+        GameHistory history = new GameHistory(store);
+        assertEquals(1, history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)));
+        assertTrue(history.flush());
+
+        GatedHistoryStore.Gate write = store.arm("write");
+        assertEquals(2, history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)));
+        assertTrue(write.entered().await(10, TimeUnit.SECONDS)); // the writer is inside that batch
+        history.clearHistory();
+        assertEquals(0, history.getSessionCount());
+        write.release().countDown();
+
+        assertEquals(1, history.addSession(new GameSession("Hard", 10, 1.0, 1.0, 2.0)));
+        history.close();
+        assertEquals(List.of(1), store.persistedIds()); // the batch in flight did not outlive the clear
+        assertEquals("Hard", store.persisted.get(1).getDifficulty());
+        assertEquals(1, store.seq); // the unused rest of the block was given back
+    }
+
+    @Test
+    public void GameHistory_test_clear_during_reservation() throws Exception {
+        GatedHistoryStore store = new GatedHistoryStore();
+        store.persisted.put(20, new GameSession(20, 1000, "Easy", 10, 1.0, 1.0, 2.0, null));
+        store.seq = 20;
+        GatedHistoryStore.Gate reserve = store.arm("reserve");
+        GameHistory history = new GameHistory(store); // the writer reserves the first block right away
+        assertTrue(reserve.entered().await(10, TimeUnit.SECONDS));
+        history.clearHistory();
+        reserve.release().countDown();
+
+        // the block reserved before the clear is dropped, and the reset is not undone by it
+        assertEquals(1, history.addSession(new GameSession("Hard", 10, 1.0, 1.0, 2.0)));
+        history.close();
+        assertEquals(List.of(1), store.persistedIds());
+    }
+
+    @Test
+    public void GameHistory_test_reload_during_catch_up() throws Exception {
+        GatedHistoryStore store = new GatedHistoryStore();
+        GameHistory history = new GameHistory(store);
+        history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0));
+        assertTrue(history.flush());
+
+        GatedHistoryStore.Gate write = store.arm("write");
+        history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)); // in flight
+        assertTrue(write.entered().await(10, TimeUnit.SECONDS));
+        history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)); // pending
+
+        // another process replaced the file: the reload must not drop the changes not written yet
+        GameSession foreign = new GameSession(0, 1000, "Hard", 10, 1.0, 1.0, 2.0, null);
+        foreign.setSessionId(50);
+        store.polled.addAll(List.of(HistoryStore.Change.clear(), HistoryStore.Change.add(foreign),
+                HistoryStore.Change.add(store.persisted.get(1))));
+        assertEquals(List.of(1, 2, 3, 50),
+                history.getAllSessions().stream().map(GameSession::getSessionId).toList());
+        write.release().countDown();
+        assertTrue(history.flush());
+        history.close();
+        assertEquals(List.of(1, 2, 3), store.persistedIds());
+    }
+
+    @Test
+    public void GameHistory_test_close_during_reservation() throws Exception {
+        GatedHistoryStore store = new GatedHistoryStore();
+        GatedHistoryStore.Gate reserve = store.arm("reserve");
+        GameHistory history = new GameHistory(store); // the writer reserves the first block right away
+        assertTrue(reserve.entered().await(10, TimeUnit.SECONDS));
+
+        Thread closer = new Thread(history::close);
+        closer.start();
+        while (closer.getState() != Thread.State.TIMED_WAITING && closer.isAlive()) {
+            Thread.sleep(1);
+        }
+        assertThrows(IllegalStateException.class,
+                () -> history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)));
+        reserve.release().countDown();
+        closer.join(10_000);
+        assertFalse(closer.isAlive());
+
+        // the block that arrived during close was given back
+        assertEquals(0, store.seq);
+        assertTrue(store.closed);
+        assertTrue(store.persisted.isEmpty());
+    }
+
+    @Test
+    public void JdbcHistoryStore_test_database() throws Exception {
+        // an in-memory H2 database by default, or e.g. -Dhistory.jdbc.url=jdbc:postgresql://localhost/test
+        String url = System.getProperty("history.jdbc.url", "jdbc:h2:mem:history;DB_CLOSE_DELAY=-1");
+        String user = System.getProperty("history.jdbc.user");
+        String password = System.getProperty("history.jdbc.password");
+        long now = System.currentTimeMillis();
+        int removed;
+        int other;
+        try (GameHistory history = new GameHistory(new JdbcHistoryStore(url, user, password, "kiosk-1", 2));
+                GameHistory kiosk2 = new GameHistory(new JdbcHistoryStore(url, user, password, "kiosk-2", 2))) {
+            history.clearHistory();
+            kiosk2.clearHistory();
+            for (int i = 0; i < 50; i++) {
+                history.addSession(new GameSession(0, now - i * 1000L, i % 2 == 0 ? "Hard" : "Easy", 10, i, 1.0, 2.0,
+                        null));
+            }
+            removed = history.addSession(new GameSession("Hard", 10, 1.0, 1.0, 2.0));
+            assertTrue(history.removeSession(removed));
+            other = kiosk2.addSession(new GameSession(0, now, "Hard", 10, 1.0, 1.0, 2.0, null));
+            assertTrue(other != removed);
+            assertTrue(history.flush());
+            assertTrue(kiosk2.flush());
+        }
+
+        JdbcHistoryStore store = new JdbcHistoryStore(url, user, password, "kiosk-1", 2);
+        assertEquals(26, store.findSessions("hard", now - 60_000, now + 1).size()); // both clients
+        GameSession taken = new GameSession(0, now, "Easy", 10, 1.0, 1.0, 2.0, null);
+        taken.setSessionId(other);
+        // an id that is taken fails instead of overwriting the other client's session
+        assertThrows(IOException.class, () -> store.write(List.of(HistoryStore.Change.add(taken))));
+        try (GameHistory reopened = new GameHistory(store)) {
+            assertEquals(50, reopened.getSessionCount()); // only its own sessions
+            int next = reopened.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0));
+            assertTrue(next > removed);
+            reopened.clearHistory(); // clears kiosk-1 only, and the shared ids keep growing
+            assertTrue(reopened.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)) > next);
+            reopened.clearHistory();
+        }
+        try (GameHistory kiosk2 = new GameHistory(new JdbcHistoryStore(url, user, password, "kiosk-2", 2))) {
+            assertEquals(other, kiosk2.getAllSessions().get(0).getSessionId());
+            kiosk2.clearHistory();
+        }
+    }
+
+    @Test
+    public void HistoryRetention_test_rollups(@TempDir Path dir) throws Exception {
+        Path rollupFile = dir.resolve("history.jsonl.rollups");
+        Clock clock = Clock.fixed(Instant.parse("2025-06-30T12:00:00Z"), ZoneOffset.UTC);
+        long jan10 = Instant.parse("2025-01-10T08:00:00Z").toEpochMilli();
+        try (GameHistory history = new GameHistory(dir.resolve("history.jsonl").toString())) {
+            history.addSession(new GameSession(0, jan10, "Easy", 10, 1.0, 1.0, 2.0, null)); // 100 %
+            history.addSession(new GameSession(0, jan10 + 1000, "Easy", 10, 1.5, 1.0, 2.0, null)); // 50 %
+            history.addSession(new GameSession(0, jan10 + 2000, "Hard", 10, 2.0, 1.0, 2.0, null)); // 0 %
+            history.addSession(new GameSession(0, clock.millis() - 3_600_000, "Easy", 10, 1.0, 1.0, 2.0, null));
+
+            HistoryRetention retention = new HistoryRetention(history, rollupFile, Duration.ofDays(30), clock);
+            assertEquals(3, retention.compact());
+            assertEquals(0, retention.compact()); // incremental: nothing expired since
+            assertEquals(1, history.getSessionCount());
+
+            List<DailyRollup> easy = retention.getRollups("easy", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1));
+            assertEquals(1, easy.size());
+            assertEquals(LocalDate.of(2025, 1, 10), easy.get(0).day());
+            assertEquals(2, easy.get(0).count());
+            assertEquals(75.0, easy.get(0).mean(), 1e-9);
+            assertEquals(625.0, easy.get(0).variance(), 1e-9);
+            assertEquals(50.0, easy.get(0).min(), 1e-9);
+            assertEquals(100.0, easy.get(0).max(), 1e-9);
+            DailyRollup all = retention.getRollups().stream().reduce(DailyRollup::merge).orElseThrow();
+            assertEquals(3, all.count());
+            assertEquals(50.0, all.mean(), 1e-9);
+            retention.close();
+
+            // the rollups survive a restart, and sessions of a pass cut short are not counted twice
+            history.addSession(new GameSession(0, jan10 + 3000, "Hard", 10, 1.0, 1.0, 2.0, null));
+            HistoryRetention reopened = new HistoryRetention(history, rollupFile, Duration.ofDays(30), clock);
+            assertEquals(2, reopened.getRollups().size());
+            assertEquals(1, reopened.compact());
+            assertEquals(3, reopened.getRollups().stream().mapToLong(DailyRollup::count).sum());
+            reopened.clearRollups();
+            assertTrue(reopened.getRollups().isEmpty());
+            reopened.close();
+
+            // a rollup file that cannot be read is not replaced, so its rollups are not lost
+            String damagedJson = "{\"version\":1,\"rolledUpBefore\":0,\"rollups\":[[";
+            Files.writeString(rollupFile, damagedJson);
+            history.addSession(new GameSession(0, jan10 + 4000, "Easy", 10, 1.0, 1.0, 2.0, null));
+            assertEquals(1, history.findSessions(null, Long.MIN_VALUE, clock.millis(), 1).size());
+            HistoryRetention damaged = new HistoryRetention(history, rollupFile, Duration.ofDays(30), clock);
+            assertEquals(0, damaged.compact());
+            assertEquals(damagedJson, Files.readString(rollupFile));
+            assertEquals(2, history.getSessionCount());
+            damaged.close();
+        }
+    }
+
+    @Test
+    public void GameHistory_test_file_compaction(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("history.jsonl");
+        GameHistory history = new GameHistory(file.toString());
+        int n = 600;
+        for (int i = 0; i < n; i++) {
+            history.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0));
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 1; id < n; id++) {
+            ids.add(id);
+        }
+        assertEquals(n - 1, history.removeSessions(ids));
+        history.close();
+
+        // more dead lines than live sessions: the file was rewritten with only the live one
+        assertTrue(Files.readAllLines(file).size() <= 3, "header, the session and maybe a tombstone for the last id");
+        try (GameHistory reopened = new GameHistory(file.toString())) {
+            assertEquals(1, reopened.getSessionCount());
+            assertNotNull(reopened.getSession(n));
+            assertEquals(n + 1, reopened.addSession(new GameSession("Easy", 10, 1.0, 1.0, 2.0)));
+        }
+    }
+
+    @Test
+    public void GameHistory_test_concurrent_processes(@TempDir Path dir) throws Exception {
+        for (String name : List.of("history.json", "history.jsonl")) {
+            String path = dir.resolve(name).toString();
+            int perProcess = name.endsWith(".jsonl") ? 100 : 30;
+            GameHistory local = new GameHistory(path);
+            List<Process> writers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                writers.add(new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", System.getProperty("java.class.path"), HistoryWriterProcess.class.getName(), path,
+                        Integer.toString(perProcess))
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD).start());
+            }
+            for (int i = 0; i < perProcess; i++) {
+                local.addSession(new GameSession("Easy", 10, i, 1.0, 2.0));
+            }
+            for (Process writer : writers) {
+                assertTrue(writer.waitFor(60, TimeUnit.SECONDS), name + ": writer hung");
+                assertEquals(0, writer.exitValue());
+            }
+            local.flush();
+
+            // this process sees the other processes' sessions without reopening
+            assertEquals(4 * perProcess, local.getSessionCount(), name);
+            local.close();
+            List<GameSession> all;
+            try (GameHistory reopened = new GameHistory(path)) {
+                all = reopened.getAllSessions();
+            }
+            assertEquals(4 * perProcess, all.size(), name);
+            assertEquals(4 * perProcess, all.stream().mapToInt(GameSession::getSessionId).distinct().count(), name);
+        }
+    }
+
+    /**
+     * In-memory store for the {@link GameHistory} concurrency tests. It keeps
+     * an id sequence like the file stores, and it can hold the next write or
+     * reservation until the test releases it.
+     */
+    private static class GatedHistoryStore implements HistoryStore {
+        final NavigableMap<Integer, GameSession> persisted = new TreeMap<>();
+        final List<HistoryStore.Change> polled = new ArrayList<>();
+        volatile int seq;
+        volatile boolean closed;
+        volatile String gate;
+        volatile Gate armed;
+
+        /**
+         * A held call: {@code entered} opens when the call is held, and the
+         * call goes on once {@code release} is opened.
+         */
+        record Gate(CountDownLatch entered, CountDownLatch release) {
+        }
+
+        /** Holds the next call of the given kind, "write" or "reserve". */
+        Gate arm(String kind) {
+            armed = new Gate(new CountDownLatch(1), new CountDownLatch(1));
+            gate = kind;
+            return armed;
+        }
+
+        synchronized List<Integer> persistedIds() {
+            return new ArrayList<>(persisted.keySet());
+        }
+
+        @Override
+        public synchronized List<GameSession> readAll() {
+            return new ArrayList<>(persisted.values());
+        }
+
+        @Override
+        public int lastId() {
+            return seq;
+        }
+
+        @Override
+        public int reserveIds(int floor, int count) {
+            pass("reserve");
+            synchronized (this) {
+                seq = Math.max(seq, floor) + count;
+                return seq - count + 1;
+            }
+        }
+
+        @Override
+        public synchronized void releaseIds(int from, int to) {
+            if (seq == to) {
+                seq = from - 1;
+            }
+        }
+
+        @Override
+        public synchronized void resetIds() {
+            seq = 0;
+        }
+
+        @Override
+        public void write(List<HistoryStore.Change> changes) {
+            pass("write");
+            synchronized (this) {
+                for (HistoryStore.Change change : changes) {
+                    switch (change.kind()) {
+                        case ADD -> persisted.put(change.sessionId(), change.session());
+                        case REMOVE -> persisted.remove(change.sessionId());
+                        case CLEAR -> persisted.clear();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized List<HistoryStore.Change> poll() {
+            List<HistoryStore.Change> changes = new ArrayList<>(polled);
+            polled.clear();
+            return changes;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        /** Holds the calling thread if a call of this kind is armed. */
+        private void pass(String kind) {
+            if (!kind.equals(gate)) {
+                return;
+            }
+            gate = null;
+            Gate held = armed;
+            held.entered().countDown();
+            try {
+                assertTrue(held.release().await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Child process for {@link #GameHistory_test_killed_writer(Path)} and
+     * {@link #GameHistory_test_concurrent_processes(Path)}: records sessions and
+     * prints the id of each one once it is on disk. Runs forever, or stops
+     * after the number of sessions given as second argument.
+     */
+    public static class HistoryWriterProcess {
+        public static void main(String[] args) {
+            GameHistory history = new GameHistory(args[0]);
+            int count = args.length > 1 ? Integer.parseInt(args[1]) : Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int id = history.addSession(new GameSession("Hard", 10, 1.0, 1.0, 2.0));
+                if (history.flush()) {
+                    System.out.println(id);
+                    System.out.flush();
+                }
+            }
+            history.close();
+        }
+    }
 }